@@ -0,0 +1,530 @@
+package fp.jadobec;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import fp.io.Cause;
+import fp.io.IO;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.GeneralFailure;
+import fp.util.Left;
+import fp.util.Right;
+
+/**
+ * Loads the rows of many keys with one query. The query selects the key
+ * column too, e.g.
+ *
+ * <pre>
+ * final BatchLoader&lt;Integer, Email&gt; emails = BatchLoader.of(
+ *     "SELECT id_user, email, validated FROM email WHERE id_user IN ({keys})",
+ *     rs -&gt; rs.getInt(1),
+ *     rs -&gt; Email.of(rs.getString(2), rs.getBoolean(3))
+ * );
+ * </pre>
+ *
+ * {@link #loadMany} is the call for a known set of keys: it loads them in
+ * batches of {@code batchSize} without waiting. The {@link #load} calls
+ * that run concurrently (e.g. in {@code mapStreamEitherPar}) within
+ * {@code window} are collected into one batch; the first caller runs the
+ * query on its connection for all of them. It only waits for the window
+ * while other {@code load} calls of the loader are in flight, so a single
+ * caller loading one key after the other gets a query per key, without
+ * the wait.
+ * <p>
+ * Loaded keys are cached by the loader, so a loader is meant to live for
+ * one request. A key that failed to load is loaded again by the next call,
+ * so is a key whose batch was interrupted or died. A call waiting for the
+ * batch of another one fails after {@code maxWait}.
+ * The key extractor has to return keys equal to the requested ones, e.g.
+ * {@code Integer} for an {@code Integer} key, not {@code Long}.
+ */
+public final class BatchLoader<K, V>
+{
+    private final String sql;
+
+    private final Extractor<K> keyExtractor;
+
+    private final Extractor<V> valueExtractor;
+
+    private final int batchSize;
+
+    private final Duration window;
+
+    private final String arrayType;
+
+    private final Duration maxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<K, CompletableFuture<Either<Failure, List<V>>>> loaded =
+        new HashMap<>();
+
+    private Batch<K, V> pending;
+
+    private int loading = 0;
+
+    private BatchLoader(
+        final String sql,
+        final Extractor<K> keyExtractor,
+        final Extractor<V> valueExtractor,
+        final int batchSize,
+        final Duration window,
+        final String arrayType,
+        final Duration maxWait
+    )
+    {
+        this.sql = sql;
+        this.keyExtractor = keyExtractor;
+        this.valueExtractor = valueExtractor;
+        this.batchSize = batchSize;
+        this.window = window;
+        this.arrayType = arrayType;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * The {@code {keys}} in the SQL is replaced by the parameter placeholders
+     * of the keys. The number of placeholders is rounded up to a power of
+     * two by repeating the last key, so there are only a few different
+     * statements to prepare.
+     */
+    public static <K, V> BatchLoader<K, V> of(
+        final String sql,
+        final Extractor<K> keyExtractor,
+        final Extractor<V> valueExtractor
+    )
+    {
+        return new BatchLoader<>(
+            sql,
+            keyExtractor,
+            valueExtractor,
+            1000,
+            Duration.ofMillis(1),
+            null,
+            Duration.ofMinutes(1)
+        );
+    }
+
+    public BatchLoader<K, V> withBatchSize(final int batchSize)
+    {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Wrong batch size: " + batchSize);
+        }
+        return new BatchLoader<>(
+            sql,
+            keyExtractor,
+            valueExtractor,
+            batchSize,
+            window,
+            arrayType,
+            maxWait
+        );
+    }
+
+    public BatchLoader<K, V> withWindow(final Duration window)
+    {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Negative window: " + window);
+        }
+        return new BatchLoader<>(
+            sql,
+            keyExtractor,
+            valueExtractor,
+            batchSize,
+            window,
+            arrayType,
+            maxWait
+        );
+    }
+
+    /**
+     * Binds the keys as one array parameter of {@code sqlType}, for
+     * queries like {@code WHERE id = ANY(?)} on PostgreSQL.
+     */
+    public BatchLoader<K, V> withArray(final String sqlType)
+    {
+        return new BatchLoader<>(
+            sql,
+            keyExtractor,
+            valueExtractor,
+            batchSize,
+            window,
+            sqlType,
+            maxWait
+        );
+    }
+
+    /**
+     * The longest time a call waits for the batch of another call.
+     */
+    public BatchLoader<K, V> withMaxWait(final Duration maxWait)
+    {
+        if (maxWait.isNegative() || maxWait.isZero()) {
+            throw new IllegalArgumentException("Wrong max wait: " + maxWait);
+        }
+        return new BatchLoader<>(
+            sql,
+            keyExtractor,
+            valueExtractor,
+            batchSize,
+            window,
+            arrayType,
+            maxWait
+        );
+    }
+
+    public IO<Failure, List<V>> load(final K key)
+    {
+        final IO<Failure, Ticket<K, V>> enqueue = IO.effectTotal(() -> enqueue(key));
+        return enqueue.flatMap(ticket -> ticket.leader()
+            ? dispatch(ticket.batch()).flatMap(v -> await(ticket.result()))
+            : await(ticket.result())
+        );
+    }
+
+    public IO<Failure, V> loadOne(final K key)
+    {
+        return load(key).flatMap(values -> values.isEmpty()
+            ? IO.fail(Cause.fail(GeneralFailure.of("Missing result for " + key)))
+            : IO.succeed(values.get(0))
+        );
+    }
+
+    public IO<Failure, Map<K, List<V>>> loadMany(final Iterable<K> keys)
+    {
+        final IO<Failure, List<Batch<K, V>>> register =
+            IO.effectTotal(() -> register(keys));
+        return register.flatMap(batches -> guarded(batches, runAll(batches, 0)))
+            .flatMap(v -> collect(keys));
+    }
+
+    public void clear()
+    {
+        lock.lock();
+        try {
+            loaded.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Ticket<K, V> enqueue(final K key)
+    {
+        lock.lock();
+        try {
+            final CompletableFuture<Either<Failure, List<V>>> cached = loaded.get(key);
+            if (cached != null) {
+                return new Ticket<>(false, null, cached);
+            }
+
+            final CompletableFuture<Either<Failure, List<V>>> result =
+                new CompletableFuture<>();
+            loaded.put(key, result);
+            loading++;
+            result.whenComplete((value, e) -> loaded());
+
+            final boolean leader = pending == null;
+            if (leader) {
+                pending = new Batch<>();
+            }
+            final Batch<K, V> batch = pending;
+            batch.results.put(key, result);
+            if (batch.results.size() >= batchSize) {
+                pending = null;
+                batch.full.countDown();
+            }
+            return new Ticket<>(leader, batch, result);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loaded()
+    {
+        lock.lock();
+        try {
+            loading--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Batch<K, V>> register(final Iterable<K> keys)
+    {
+        final List<Batch<K, V>> batches = new ArrayList<>();
+        lock.lock();
+        try {
+            Batch<K, V> batch = new Batch<>();
+            for (K key : keys) {
+                if (!loaded.containsKey(key)) {
+                    final CompletableFuture<Either<Failure, List<V>>> result =
+                        new CompletableFuture<>();
+                    loaded.put(key, result);
+                    batch.results.put(key, result);
+                    if (batch.results.size() >= batchSize) {
+                        batches.add(batch);
+                        batch = new Batch<>();
+                    }
+                }
+            }
+            if (!batch.results.isEmpty()) {
+                batches.add(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return batches;
+    }
+
+    private IO<Failure, Void> runAll(
+        final List<Batch<K, V>> batches,
+        final int index
+    )
+    {
+        return index < batches.size()
+            ? run(batches.get(index)).flatMap(v -> runAll(batches, index + 1))
+            : IO.succeed(null);
+    }
+
+    private IO<Failure, Map<K, List<V>>> collect(final Iterable<K> keys)
+    {
+        final IO<Failure, Either<Failure, Map<K, List<V>>>> results = IO.effect(() -> {
+            final Map<K, List<V>> values = new LinkedHashMap<>();
+            for (K key : keys) {
+                final Either<Failure, List<V>> result = result(key)
+                    .get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+                if (!result.isRight()) {
+                    return Left.of(result.left());
+                }
+                values.put(key, result.right());
+            }
+            return Right.of(values);
+        });
+        return IO.absolve(results.blocking());
+    }
+
+    private CompletableFuture<Either<Failure, List<V>>> result(final K key)
+    {
+        lock.lock();
+        try {
+            final CompletableFuture<Either<Failure, List<V>>> result = loaded.get(key);
+            return result == null
+                ? CompletableFuture.completedFuture(Left.of(
+                    GeneralFailure.of("Key was cleared while loading: " + key)
+                ))
+                : result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the other keys of the batch, up to the window, then runs
+     * the query for all of them. There is no wait if every load in flight
+     * is in the batch already, as no other caller can add a key.
+     */
+    private IO<Failure, Void> dispatch(final Batch<K, V> batch)
+    {
+        final IO<Failure, Boolean> waitForKeys = IO.effect(() ->
+            !othersLoading(batch)
+                || batch.full.await(window.toNanos(), TimeUnit.NANOSECONDS)
+        );
+        return guarded(List.of(batch), waitForKeys.blocking().flatMap(full -> {
+            lock.lock();
+            try {
+                if (pending == batch) {
+                    pending = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return run(batch);
+        }));
+    }
+
+    private boolean othersLoading(final Batch<K, V> batch)
+    {
+        lock.lock();
+        try {
+            return loading > batch.results.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the command, then fails the keys of the batches it did not
+     * complete, even if it died or was interrupted, so no call waits for
+     * them and the next call loads them again.
+     */
+    private IO<Failure, Void> guarded(
+        final List<Batch<K, V>> batches,
+        final IO<Failure, Void> command
+    )
+    {
+        final IO<Failure, List<Batch<K, V>>> acquire = IO.succeed(batches);
+        return IO.bracket(
+            acquire,
+            started -> IO.effectTotal(() -> abandon(started)),
+            started -> command
+        );
+    }
+
+    private Void abandon(final List<Batch<K, V>> batches)
+    {
+        final List<CompletableFuture<Either<Failure, List<V>>>> abandoned =
+            new ArrayList<>();
+        lock.lock();
+        try {
+            for (Batch<K, V> batch : batches) {
+                if (pending == batch) {
+                    pending = null;
+                }
+                batch.results.forEach((key, future) -> {
+                    if (!future.isDone()) {
+                        loaded.remove(key, future);
+                        abandoned.add(future);
+                    }
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+        final Either<Failure, List<V>> failure = Left.of(
+            GeneralFailure.of("Batch load stopped before completing")
+        );
+        abandoned.forEach(future -> future.complete(failure));
+        return null;
+    }
+
+    private IO<Failure, Void> run(final Batch<K, V> batch)
+    {
+        final List<K> keys = new ArrayList<>(batch.results.keySet());
+        final Extractor<Map.Entry<K, V>> row = rs -> new SimpleImmutableEntry<>(
+            keyExtractor.extract(rs),
+            valueExtractor.extract(rs)
+        );
+        final IO<Failure, Map<K, List<V>>> query = Repository.queryPrepared(
+            arrayType == null ? inListSql(keys.size()) : sql,
+            ps -> bind(ps, keys),
+            row,
+            BatchLoader::group
+        );
+        return query.either().map(result -> {
+            complete(batch, result);
+            return null;
+        });
+    }
+
+    private void complete(
+        final Batch<K, V> batch,
+        final Either<Failure, Map<K, List<V>>> result
+    )
+    {
+        if (result.isRight()) {
+            final Map<K, List<V>> values = result.right();
+            batch.results.forEach((key, future) -> future.complete(Right.of(
+                values.getOrDefault(key, Collections.emptyList())
+            )));
+        } else {
+            lock.lock();
+            try {
+                batch.results.forEach(loaded::remove);
+            } finally {
+                lock.unlock();
+            }
+            batch.results.values()
+                .forEach(future -> future.complete(Left.of(result.left())));
+        }
+    }
+
+    private String inListSql(final int keyCount)
+    {
+        final int placeholders = paddedSize(keyCount);
+        return sql.replace(
+            "{keys}",
+            Stream.generate(() -> "?")
+                .limit(placeholders)
+                .collect(Collectors.joining(", "))
+        );
+    }
+
+    private void bind(
+        final PreparedStatement ps,
+        final List<K> keys
+    ) throws SQLException
+    {
+        if (arrayType != null) {
+            ps.setArray(1, ps.getConnection().createArrayOf(arrayType, keys.toArray()));
+            return;
+        }
+
+        final int placeholders = paddedSize(keys.size());
+        for (int i = 0; i < placeholders; i++) {
+            final K key = keys.get(Math.min(i, keys.size() - 1));
+            Params.bind(ps, i + 1, key, Types.NULL);
+        }
+    }
+
+    static int paddedSize(final int keyCount)
+    {
+        return keyCount <= 1
+            ? 1
+            : Integer.highestOneBit(keyCount - 1) << 1;
+    }
+
+    private static <K, V> IO<Failure, Map<K, List<V>>> group(
+        final Stream<Map.Entry<K, V>> rows
+    )
+    {
+        return IO.succeed(rows
+            .filter(row -> row.getKey() != null)
+            .collect(Collectors.groupingBy(
+                Map.Entry::getKey,
+                Collectors.mapping(Map.Entry::getValue, Collectors.toList())
+            ))
+        );
+    }
+
+    private IO<Failure, List<V>> await(
+        final CompletableFuture<Either<Failure, List<V>>> result
+    )
+    {
+        final IO<Failure, Either<Failure, List<V>>> waiting = IO.effect(() ->
+            result.get(maxWait.toNanos(), TimeUnit.NANOSECONDS)
+        );
+        return IO.absolve(result.isDone() ? waiting : waiting.blocking());
+    }
+
+    private record Ticket<K, V>(
+        boolean leader,
+        Batch<K, V> batch,
+        CompletableFuture<Either<Failure, List<V>>> result
+    )
+    {
+    }
+
+    private static final class Batch<K, V>
+    {
+        private final Map<K, CompletableFuture<Either<Failure, List<V>>>> results =
+            new LinkedHashMap<>();
+
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+}
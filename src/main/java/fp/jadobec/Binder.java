@@ -0,0 +1,9 @@
+package fp.jadobec;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface Binder<T> {
+    void bind(PreparedStatement ps, T value) throws SQLException;
+}
@@ -0,0 +1,324 @@
+package fp.jadobec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The statements of {@code Repository.bulkInsert}.
+ * <p>
+ * Rows are inserted by multi-row {@code INSERT ... VALUES} statements. A
+ * statement has {@link #rowsPerStatement} rows, the rest is split into
+ * statements of power of two rows (e.g. 13 = 8 + 4 + 1), so a table has
+ * only a few different statements, which the statement cache can reuse.
+ * <p>
+ * On PostgreSQL the rows are streamed by {@code COPY ... FROM STDIN}
+ * instead. The driver is reached by reflection, so it is not a dependency.
+ * <p>
+ * The table and the columns are quoted by the {@link Identifiers} of the
+ * database.
+ */
+final class BulkInsert
+{
+    /**
+     * The parameter limit of the PostgreSQL protocol, lower than the
+     * limits of the other databases, except SQL Server (2100).
+     */
+    static final int MAX_PARAMETERS = 32_767;
+
+    static final int MAX_ROWS = 1024;
+
+    private static final String PG_CONNECTION = "org.postgresql.core.BaseConnection";
+
+    private static final String PG_COPY_MANAGER = "org.postgresql.copy.CopyManager";
+
+    private final String table;
+
+    private final List<String> columns;
+
+    private final Identifiers identifiers;
+
+    private BulkInsert(
+        final String table,
+        final List<String> columns,
+        final Identifiers identifiers
+    )
+    {
+        this.table = table;
+        this.columns = columns;
+        this.identifiers = identifiers;
+    }
+
+    static BulkInsert of(
+        final String table,
+        final Record first,
+        final Identifiers identifiers
+    )
+    {
+        return new BulkInsert(table, List.copyOf(first.fields()), identifiers);
+    }
+
+    List<String> columns()
+    {
+        return columns;
+    }
+
+    /**
+     * The largest power of two not above {@link #MAX_ROWS} whose
+     * parameters are within {@link #MAX_PARAMETERS}.
+     */
+    int rowsPerStatement()
+    {
+        final int rows = Math.min(MAX_ROWS, MAX_PARAMETERS / columns.size());
+        return Math.max(1, Integer.highestOneBit(rows));
+    }
+
+    /**
+     * The number of rows of the next statement, if {@code remaining} rows
+     * are left.
+     */
+    int chunkSize(final int remaining)
+    {
+        final int rows = rowsPerStatement();
+        return remaining >= rows ? rows : Integer.highestOneBit(remaining);
+    }
+
+    String insertSql(final int rows)
+    {
+        final String row = columns.stream()
+            .map(column -> "?")
+            .collect(Collectors.joining(", ", "(", ")"));
+        return "INSERT INTO " + identifiers.table(table)
+            + " (" + quotedColumns() + ")"
+            + " VALUES "
+            + Stream.generate(() -> row)
+                .limit(rows)
+                .collect(Collectors.joining(", "));
+    }
+
+    void bind(
+        final PreparedStatement ps,
+        final List<Record> records
+    ) throws SQLException
+    {
+        int index = 1;
+        for (Record record : records) {
+            check(record);
+            for (String column : columns) {
+                Params.bind(ps, index++, record.field(column).orElse(null), Types.NULL);
+            }
+        }
+    }
+
+    private void check(final Record record) throws SQLException
+    {
+        final Set<String> fields = record.fields();
+        if (fields.size() != columns.size() || !fields.containsAll(columns)) {
+            throw new SQLException(
+                "Record fields " + fields + " differ from columns " + columns
+            );
+        }
+    }
+
+    static boolean isPostgres(final Connection connection)
+    {
+        try {
+            return connection.isWrapperFor(Class.forName(PG_CONNECTION));
+        } catch (ClassNotFoundException | SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Streams the records in CSV format through the {@code CopyManager} of
+     * the PostgreSQL driver and returns the number of copied rows.
+     */
+    long copyIn(
+        final Connection connection,
+        final Iterator<Record> records
+    ) throws Exception
+    {
+        final Class<?> baseConnection = Class.forName(PG_CONNECTION);
+        final Class<?> copyManagerType = Class.forName(PG_COPY_MANAGER);
+        final Constructor<?> constructor =
+            copyManagerType.getConstructor(baseConnection);
+        final Object copyManager =
+            constructor.newInstance(connection.unwrap(baseConnection));
+        final Method copyIn = copyManagerType.getMethod(
+            "copyIn",
+            String.class,
+            Reader.class
+        );
+        return (Long) copyIn.invoke(
+            copyManager,
+            "COPY " + identifiers.table(table) + " (" + quotedColumns() + ")"
+                + " FROM STDIN WITH (FORMAT csv)",
+            new CsvReader(records)
+        );
+    }
+
+    private String quotedColumns()
+    {
+        return columns.stream()
+            .map(identifiers::quote)
+            .collect(Collectors.joining(", "));
+    }
+
+    private void appendCsv(final StringBuilder line, final Record record)
+        throws SQLException
+    {
+        check(record);
+        boolean first = true;
+        for (String column : columns) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            final Object value = record.field(column).orElse(null);
+            if (value != null) {
+                line.append('"')
+                    .append(csvValue(value).replace("\"", "\"\""))
+                    .append('"');
+            }
+        }
+        line.append('\n');
+    }
+
+    /**
+     * The value as PostgreSQL reads it: a byte array in the hex format of
+     * {@code bytea}, a date or time in ISO 8601, not in the format of
+     * {@code toString()}, which is a memory address for arrays and
+     * depends on the JVM's time zone for {@code java.util.Date}.
+     */
+    static String csvValue(final Object value)
+    {
+        if (value instanceof byte[] bytes) {
+            return "\\x" + HexFormat.of().formatHex(bytes);
+        } else if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        } else if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        } else if (value instanceof java.sql.Time time) {
+            return time.toLocalTime().toString();
+        } else if (value instanceof Date date) {
+            return date.toInstant().toString();
+        } else if (value instanceof ZonedDateTime dateTime) {
+            return dateTime.toOffsetDateTime().toString();
+        } else {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Quotes identifiers by the quote of the database. A plain name, which
+     * would not need quotes, is turned into the case the database stores
+     * unquoted names in, so it names the same table or column quoted as
+     * unquoted. Every part of a qualified table name is quoted on its own,
+     * a quote within a name is doubled, so a name can not end the
+     * identifier. Without a quote only plain names are accepted.
+     */
+    record Identifiers(String quote, boolean upperCase, boolean lowerCase)
+    {
+        static Identifiers of(final Connection connection) throws SQLException
+        {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            return new Identifiers(
+                metaData.getIdentifierQuoteString().trim(),
+                metaData.storesUpperCaseIdentifiers(),
+                metaData.storesLowerCaseIdentifiers()
+            );
+        }
+
+        String table(final String name)
+        {
+            return Stream.of(name.split("\\.", -1))
+                .map(this::quote)
+                .collect(Collectors.joining("."));
+        }
+
+        String quote(final String name)
+        {
+            final boolean plain = name.matches("[A-Za-z_][A-Za-z0-9_]*");
+            if (quote.isEmpty()) {
+                if (!plain) {
+                    throw new IllegalArgumentException(
+                        "Name needs quotes the database does not have: " + name
+                    );
+                }
+                return name;
+            }
+            String folded = name;
+            if (plain) {
+                if (upperCase) {
+                    folded = name.toUpperCase(Locale.ROOT);
+                } else if (lowerCase) {
+                    folded = name.toLowerCase(Locale.ROOT);
+                }
+            }
+            return quote + folded.replace(quote, quote + quote) + quote;
+        }
+    }
+
+    /**
+     * Formats the records into CSV lines as the driver reads them, so the
+     * records are not all in memory at once.
+     */
+    private final class CsvReader extends Reader
+    {
+        private final Iterator<Record> records;
+
+        private final StringBuilder line = new StringBuilder();
+
+        private int position = 0;
+
+        private CsvReader(final Iterator<Record> records)
+        {
+            this.records = records;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length)
+            throws IOException
+        {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == line.length()) {
+                if (!records.hasNext()) {
+                    return -1;
+                }
+                line.setLength(0);
+                position = 0;
+                try {
+                    appendCsv(line, records.next());
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                }
+            }
+            final int count = Math.min(length, line.length() - position);
+            line.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package fp.jadobec;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public final class CacheConfig
+{
+    private final long maximumWeight;
+
+    private final ToLongFunction<Object> weigher;
+
+    private final Function<String, Duration> ttl;
+
+    private CacheConfig(final Builder builder)
+    {
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+        this.ttl = builder.ttl;
+    }
+
+    public static CacheConfig defaults()
+    {
+        return new Builder().build();
+    }
+
+    public static CacheConfig build(Consumer<Builder> factory)
+    {
+        final Builder builder = new Builder();
+        factory.accept(builder);
+        return builder.build();
+    }
+
+    public long maximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    public long weigh(final Object value)
+    {
+        return weigher.applyAsLong(value);
+    }
+
+    public Duration ttl(final String sql)
+    {
+        final Duration duration = ttl.apply(sql);
+        return duration == null ? Duration.ZERO : duration;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CacheConfig(maximumWeight -> " + maximumWeight + ")";
+    }
+
+    public static final class Builder
+    {
+        private long maximumWeight = 10_000;
+
+        private ToLongFunction<Object> weigher = Builder::rows;
+
+        private Function<String, Duration> ttl = sql -> Duration.ofMinutes(5);
+
+        private Builder()
+        {
+        }
+
+        /**
+         * The least recently used results are evicted above this weight.
+         */
+        public Builder maximumWeight(long maximumWeight)
+        {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * The weight of a cached result. By default a single value weighs
+         * 1 and a query result weighs its row count.
+         */
+        public Builder weigher(ToLongFunction<Object> weigher)
+        {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder ttl(Duration ttl)
+        {
+            return ttl(sql -> ttl);
+        }
+
+        /**
+         * The time to live of the results of a query. The result of a
+         * query with {@link Duration#ZERO} time to live is not cached.
+         */
+        public Builder ttl(Function<String, Duration> ttl)
+        {
+            this.ttl = ttl;
+            return this;
+        }
+
+        private static long rows(final Object value)
+        {
+            return value instanceof Collection<?> rows
+                ? Math.max(rows.size(), 1)
+                : 1;
+        }
+
+        private CacheConfig build()
+        {
+            if (maximumWeight < 1) {
+                throw new IllegalArgumentException(
+                    "Wrong maximum weight: " + maximumWeight
+                );
+            }
+            if (weigher == null || ttl == null) {
+                throw new IllegalArgumentException("Missing weigher or ttl");
+            }
+            return new CacheConfig(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package fp.jadobec;
+
+public record CacheStats(
+    long hits,
+    long misses,
+    long evictions,
+    long invalidations,
+    long size,
+    long weight
+)
+{
+    public double hitRatio()
+    {
+        final long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,353 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import fp.io.IO;
+import fp.util.Failure;
+import fp.util.ThrowingConsumer;
+
+/**
+ * Caches the results of {@code querySingle} and {@code query} by the SQL
+ * text, the parameters and the extractor. The rows of a query are cached
+ * as a list, the stream callback is run on every call. Queries that are
+ * not cached are streamed by the delegate as they would be without it.
+ * <p>
+ * The extractor is compared by identity, so a capturing lambda, which is
+ * a new object on every evaluation, never hits the cache. Keep the
+ * extractors of cached queries in constants.
+ * <p>
+ * Queries inside a transaction, or on a connection that is not in
+ * auto-commit mode, are neither cached nor answered from the cache, so
+ * uncommitted rows are never shared. Neither are locking queries, e.g.
+ * {@code SELECT ... FOR UPDATE}.
+ * <p>
+ * Writes through this service invalidate the results of the queries that
+ * read the written table, once when they run and once more when their
+ * transaction ends, so the results read by other connections before the
+ * commit do not stay in the cache. Writes that bypass this service are
+ * only noticed when the results expire.
+ *
+ * <pre>
+ * final CachedRepository repository = CachedRepository.of(
+ *     live,
+ *     CacheConfig.build(builder -> builder
+ *         .maximumWeight(50_000)
+ *         .ttl(Duration.ofMinutes(1))
+ *     )
+ * );
+ * </pre>
+ */
+public class CachedRepository extends ForwardingService
+{
+    private final CacheConfig config;
+
+    private final QueryCache cache;
+
+    private final Map<Connection, Transaction> transactions =
+        new ConcurrentHashMap<>();
+
+    private CachedRepository(
+        final Repository.Service delegate,
+        final CacheConfig config
+    )
+    {
+        super(delegate);
+        this.config = config;
+        this.cache = new QueryCache(config);
+    }
+
+    public static CachedRepository of(final Repository.Service delegate)
+    {
+        return of(delegate, CacheConfig.defaults());
+    }
+
+    public static CachedRepository of(
+        final Repository.Service delegate,
+        final CacheConfig config
+    )
+    {
+        return new CachedRepository(delegate, config);
+    }
+
+    public CacheStats cacheStats()
+    {
+        return cache.stats();
+    }
+
+    public void invalidate(final String table)
+    {
+        cache.invalidate(table.toLowerCase(Locale.ROOT));
+    }
+
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public <T> IO<Failure, T> querySingle(
+        final String sql,
+        final Extractor<T> createObject,
+        final Object... params
+    )
+    {
+        final IO<Failure, T> load = delegate.querySingle(sql, createObject, params);
+        if (!cacheable(sql)) {
+            return load;
+        }
+        return unlessInTransaction(
+            cached(sql, createObject, params, load),
+            load
+        );
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> query(
+        final String sql,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        final IO<Failure, R> direct = delegate.query(sql, createObject, fn, params);
+        if (!cacheable(sql)) {
+            return direct;
+        }
+        final IO<Failure, List<T>> rows = cached(
+            sql,
+            createObject,
+            params,
+            delegate.query(sql, createObject, CachedRepository::toList, params)
+        );
+        return unlessInTransaction(
+            rows.flatMap(list -> fn.apply(list.stream())),
+            direct
+        );
+    }
+
+    @Override
+    public IO<Failure, Integer> update(final String sql, final Object... params)
+    {
+        return written(delegate.update(sql, params), sql);
+    }
+
+    @Override
+    public IO<Failure, Integer> updatePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return written(delegate.updatePrepared(sql, prepare), sql);
+    }
+
+    @Override
+    public IO<Failure, Long> execute(final String sql, final Object... params)
+    {
+        return written(delegate.execute(sql, params), sql);
+    }
+
+    @Override
+    public IO<Failure, Long> executePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return written(delegate.executePrepared(sql, prepare), sql);
+    }
+
+    @Override
+    public IO<Failure, Long> insertReturningKey(
+        final String sql,
+        final Object... params
+    )
+    {
+        return written(delegate.insertReturningKey(sql, params), sql);
+    }
+
+    @Override
+    public <T> IO<Failure, List<Record>> insertReturningKeys(
+        final String sql,
+        final List<String> keyColumns,
+        final Iterable<T> rows,
+        final Binder<T> binder
+    )
+    {
+        return written(
+            delegate.insertReturningKeys(sql, keyColumns, rows, binder),
+            sql
+        );
+    }
+
+    @Override
+    public IO<Failure, Long> bulkInsert(
+        final String table,
+        final Stream<Record> records
+    )
+    {
+        return written(delegate.bulkInsert(table, records), "INSERT INTO " + table);
+    }
+
+    @Override
+    public IO<Failure, Integer> batchUpdate(final String... sqls)
+    {
+        return written(delegate.batchUpdate(sqls), sqls);
+    }
+
+    @Override
+    public <T> IO<Failure, int[]> batchUpdatePrepared(
+        final String sql,
+        final Iterable<T> rows,
+        final Binder<T> binder,
+        final int chunkSize
+    )
+    {
+        return written(
+            delegate.batchUpdatePrepared(sql, rows, binder, chunkSize),
+            sql
+        );
+    }
+
+    @Override
+    public <T> IO<Failure, T> transaction(final IO<Failure, T> dbCommand)
+    {
+        return IO.accessM(Connection.class, connection -> {
+            final IO<Failure, Transaction> begin =
+                IO.effectTotal(() -> begin(connection));
+            return IO.bracket(
+                begin,
+                transaction -> IO.effectTotal(() -> end(connection)),
+                transaction -> delegate.transaction(dbCommand)
+            );
+        });
+    }
+
+    private Transaction begin(final Connection connection)
+    {
+        return transactions.compute(connection, (c, transaction) -> {
+            final Transaction current = transaction == null
+                ? new Transaction()
+                : transaction;
+            current.depth++;
+            return current;
+        });
+    }
+
+    /**
+     * Invalidates the writes of the outermost transaction again, after
+     * its commit or rollback.
+     */
+    private Void end(final Connection connection)
+    {
+        transactions.computeIfPresent(connection, (c, transaction) -> {
+            if (--transaction.depth > 0) {
+                return transaction;
+            }
+            transaction.writes.forEach(cache::written);
+            return null;
+        });
+        return null;
+    }
+
+    private boolean inTransaction(final Connection connection)
+        throws SQLException
+    {
+        return transactions.containsKey(connection) || !connection.getAutoCommit();
+    }
+
+    private <T> IO<Failure, T> unlessInTransaction(
+        final IO<Failure, T> cached,
+        final IO<Failure, T> direct
+    )
+    {
+        return IO.accessM(Connection.class, connection -> {
+            final IO<Failure, Boolean> check =
+                IO.effect(() -> inTransaction(connection));
+            return check.flatMap(inTransaction -> inTransaction ? direct : cached);
+        });
+    }
+
+    private boolean cacheable(final String sql)
+    {
+        final Duration ttl = config.ttl(sql);
+        return !ttl.isZero() && !ttl.isNegative() && !QueryCache.isLocking(sql);
+    }
+
+    /**
+     * A query started before the write ended is not stored, so it cannot
+     * put back the rows the write has changed.
+     */
+    private <T> IO<Failure, T> written(
+        final IO<Failure, T> write,
+        final String... sqls
+    )
+    {
+        return IO.accessM(Connection.class, connection ->
+            write.peek(result -> invalidateWritten(connection, sqls))
+        );
+    }
+
+    private void invalidateWritten(
+        final Connection connection,
+        final String... sqls
+    )
+    {
+        for (String sql : sqls) {
+            cache.written(sql);
+        }
+        transactions.computeIfPresent(connection, (c, transaction) -> {
+            transaction.writes.addAll(Arrays.asList(sqls));
+            return transaction;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> IO<Failure, T> cached(
+        final String sql,
+        final Extractor<?> createObject,
+        final Object[] params,
+        final IO<Failure, T> load
+    )
+    {
+        final Duration ttl = config.ttl(sql);
+        final QueryCache.Key key = new QueryCache.Key(
+            sql,
+            Arrays.asList(params.clone()),
+            createObject
+        );
+        final IO<Failure, QueryCache.Lookup> lookup =
+            IO.effectTotal(() -> cache.lookup(key));
+        return lookup.flatMap(cached -> cached.hit()
+            ? IO.succeed((T) cached.value())
+            : load.peek(value -> cache.put(key, cached, value, ttl.toNanos()))
+        );
+    }
+
+    private static <T> IO<Failure, List<T>> toList(final Stream<T> stream)
+    {
+        return IO.succeed(stream.collect(Collectors.toList()));
+    }
+
+    /**
+     * The transactions of a connection through this service and the
+     * statements written in them.
+     */
+    private static final class Transaction
+    {
+        private final Set<String> writes = new HashSet<>();
+
+        private int depth = 0;
+    }
+}
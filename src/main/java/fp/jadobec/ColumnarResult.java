@@ -0,0 +1,418 @@
+package fp.jadobec;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * The rows of a numeric query read column by column into primitive arrays,
+ * with a bitmap of the null cells, so a value takes 4 or 8 bytes instead
+ * of a boxed object. Integer columns are read as {@code int}, big integer
+ * columns as {@code long}, the other numeric columns as {@code double}.
+ * <p>
+ * The streams of a column leave out the null cells, and so do the
+ * aggregates. The aggregates of a column without nulls loop over the
+ * array only.
+ */
+public final class ColumnarResult
+{
+    private final int rowCount;
+
+    private final Map<String, Column> columns;
+
+    private ColumnarResult(final int rowCount, final Map<String, Column> columns)
+    {
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    static ColumnarResult read(final ResultSet rs) throws SQLException
+    {
+        final ResultSetMetaData rsmd = rs.getMetaData();
+        final int columnCount = rsmd.getColumnCount();
+        final Column[] readers = new Column[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            readers[i - 1] = Column.of(
+                rsmd.getColumnLabel(i).toLowerCase(),
+                rsmd.getColumnType(i)
+            );
+        }
+
+        int rowCount = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                readers[i].read(rs, i + 1, rowCount);
+            }
+            rowCount++;
+        }
+
+        final Map<String, Column> columns = new LinkedHashMap<>();
+        for (Column column : readers) {
+            column.size = rowCount;
+            columns.putIfAbsent(column.name, column);
+        }
+        return new ColumnarResult(rowCount, Collections.unmodifiableMap(columns));
+    }
+
+    public int rowCount()
+    {
+        return rowCount;
+    }
+
+    public List<String> columnNames()
+    {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    public Column column(final String name)
+    {
+        final Column column = columns.get(name.toLowerCase());
+        if (column == null) {
+            throw new IllegalArgumentException("Missing column: " + name);
+        }
+        return column;
+    }
+
+    public DoubleColumn doubleColumn(final String name)
+    {
+        return as(name, DoubleColumn.class);
+    }
+
+    public LongColumn longColumn(final String name)
+    {
+        return as(name, LongColumn.class);
+    }
+
+    public IntColumn intColumn(final String name)
+    {
+        return as(name, IntColumn.class);
+    }
+
+    private <C extends Column> C as(final String name, final Class<C> type)
+    {
+        final Column column = column(name);
+        if (!type.isInstance(column)) {
+            throw new IllegalArgumentException(
+                "Column " + name + " is a " + column.getClass().getSimpleName()
+            );
+        }
+        return type.cast(column);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnarResult(rows -> " + rowCount
+            + ", columns -> " + columns.keySet() + ")";
+    }
+
+    public abstract static sealed class Column
+        permits DoubleColumn, LongColumn, IntColumn
+    {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final String name;
+
+        private final BitSet nulls = new BitSet();
+
+        private int size = 0;
+
+        private Column(final String name)
+        {
+            this.name = name;
+        }
+
+        private static Column of(final String name, final int sqlType)
+            throws SQLException
+        {
+            return switch (sqlType) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER ->
+                    new IntColumn(name);
+                case Types.BIGINT -> new LongColumn(name);
+                case Types.REAL, Types.FLOAT, Types.DOUBLE,
+                    Types.DECIMAL, Types.NUMERIC -> new DoubleColumn(name);
+                default -> throw new SQLException(
+                    "Not a numeric column: " + name + ", type " + sqlType
+                );
+            };
+        }
+
+        public String name()
+        {
+            return name;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        public boolean isNull(final int row)
+        {
+            return nulls.get(row);
+        }
+
+        public int nullCount()
+        {
+            return nulls.cardinality();
+        }
+
+        /**
+         * The values as doubles, whatever the type of the column.
+         */
+        public abstract DoubleStream asDoubleStream();
+
+        abstract void read(ResultSet rs, int index, int row) throws SQLException;
+
+        void readNull(final ResultSet rs, final int row) throws SQLException
+        {
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        IntStream rows()
+        {
+            return IntStream.range(0, size).filter(row -> !nulls.get(row));
+        }
+
+        boolean hasNulls()
+        {
+            return !nulls.isEmpty();
+        }
+
+        static int grow(final int capacity, final int row)
+        {
+            return row < capacity
+                ? capacity
+                : Math.max(INITIAL_CAPACITY, capacity * 2);
+        }
+    }
+
+    public static final class DoubleColumn extends Column
+    {
+        private double[] values = new double[0];
+
+        private DoubleColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        void read(final ResultSet rs, final int index, final int row)
+            throws SQLException
+        {
+            final int capacity = grow(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = rs.getDouble(index);
+            readNull(rs, row);
+        }
+
+        public double get(final int row)
+        {
+            return values[row];
+        }
+
+        public DoubleStream stream()
+        {
+            return hasNulls()
+                ? rows().mapToDouble(row -> values[row])
+                : Arrays.stream(values, 0, size());
+        }
+
+        @Override
+        public DoubleStream asDoubleStream()
+        {
+            return stream();
+        }
+
+        public double sum()
+        {
+            if (hasNulls()) {
+                return stream().sum();
+            }
+            double sum = 0.0;
+            for (int row = 0; row < size(); row++) {
+                sum += values[row];
+            }
+            return sum;
+        }
+
+        public OptionalDouble min()
+        {
+            return stream().min();
+        }
+
+        public OptionalDouble max()
+        {
+            return stream().max();
+        }
+
+        public OptionalDouble average()
+        {
+            final int count = size() - nullCount();
+            return count == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of(sum() / count);
+        }
+    }
+
+    public static final class LongColumn extends Column
+    {
+        private long[] values = new long[0];
+
+        private LongColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        void read(final ResultSet rs, final int index, final int row)
+            throws SQLException
+        {
+            final int capacity = grow(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = rs.getLong(index);
+            readNull(rs, row);
+        }
+
+        public long get(final int row)
+        {
+            return values[row];
+        }
+
+        public LongStream stream()
+        {
+            return hasNulls()
+                ? rows().mapToLong(row -> values[row])
+                : Arrays.stream(values, 0, size());
+        }
+
+        @Override
+        public DoubleStream asDoubleStream()
+        {
+            return stream().asDoubleStream();
+        }
+
+        public long sum()
+        {
+            if (hasNulls()) {
+                return stream().sum();
+            }
+            long sum = 0;
+            for (int row = 0; row < size(); row++) {
+                sum += values[row];
+            }
+            return sum;
+        }
+
+        public OptionalLong min()
+        {
+            return stream().min();
+        }
+
+        public OptionalLong max()
+        {
+            return stream().max();
+        }
+
+        public OptionalDouble average()
+        {
+            final int count = size() - nullCount();
+            return count == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of((double) sum() / count);
+        }
+    }
+
+    public static final class IntColumn extends Column
+    {
+        private int[] values = new int[0];
+
+        private IntColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        void read(final ResultSet rs, final int index, final int row)
+            throws SQLException
+        {
+            final int capacity = grow(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = rs.getInt(index);
+            readNull(rs, row);
+        }
+
+        public int get(final int row)
+        {
+            return values[row];
+        }
+
+        public IntStream stream()
+        {
+            return hasNulls()
+                ? rows().map(row -> values[row])
+                : Arrays.stream(values, 0, size());
+        }
+
+        @Override
+        public DoubleStream asDoubleStream()
+        {
+            return stream().asDoubleStream();
+        }
+
+        /**
+         * The sum as a {@code long}, so it does not overflow.
+         */
+        public long sum()
+        {
+            if (hasNulls()) {
+                return stream().asLongStream().sum();
+            }
+            long sum = 0;
+            for (int row = 0; row < size(); row++) {
+                sum += values[row];
+            }
+            return sum;
+        }
+
+        public OptionalInt min()
+        {
+            return stream().min();
+        }
+
+        public OptionalInt max()
+        {
+            return stream().max();
+        }
+
+        public OptionalDouble average()
+        {
+            final int count = size() - nullCount();
+            return count == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of((double) sum() / count);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import fp.util.ThrowingSupplier;
+
+/**
+ * Bounded pool of physical connections. Waiting callers are served in
+ * arrival order by a fair semaphore; idle connections are reused most
+ * recently used first, so the surplus ones age out and get evicted.
+ */
+final class ConnectionPool implements AutoCloseable
+{
+    private final ThrowingSupplier<Connection, SQLException> connectionFactory;
+
+    private final PoolConfig config;
+
+    private final Consumer<Connection> onDiscard;
+
+    private final Semaphore permits;
+
+    private final ConcurrentLinkedDeque<PooledConnection> idle =
+        new ConcurrentLinkedDeque<>();
+
+    private final Map<Connection, PooledConnection> leased =
+        new ConcurrentHashMap<>();
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder[] acquireWaitHistogram;
+
+    private final ScheduledExecutorService housekeeper;
+
+    private volatile boolean closed = false;
+
+    private ConnectionPool(
+        final ThrowingSupplier<Connection, SQLException> connectionFactory,
+        final PoolConfig config,
+        final Consumer<Connection> onDiscard
+    )
+    {
+        this.connectionFactory = connectionFactory;
+        this.config = config;
+        this.onDiscard = onDiscard;
+        this.permits = new Semaphore(config.maxSize(), true);
+        this.acquireWaitHistogram =
+            new LongAdder[PoolStats.ACQUIRE_WAIT_BOUNDS_MILLIS.length + 1];
+        for (int i = 0; i < acquireWaitHistogram.length; i++) {
+            acquireWaitHistogram[i] = new LongAdder();
+        }
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "jadobec-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static ConnectionPool create(
+        final ThrowingSupplier<Connection, SQLException> connectionFactory,
+        final PoolConfig config
+    ) throws SQLException
+    {
+        return create(connectionFactory, config, connection -> {});
+    }
+
+    /**
+     * @param onDiscard called before a physical connection is closed
+     */
+    static ConnectionPool create(
+        final ThrowingSupplier<Connection, SQLException> connectionFactory,
+        final PoolConfig config,
+        final Consumer<Connection> onDiscard
+    ) throws SQLException
+    {
+        final ConnectionPool pool =
+            new ConnectionPool(connectionFactory, config, onDiscard);
+        pool.fill();
+        final long period = housekeepingPeriodMillis(config);
+        pool.housekeeper.scheduleWithFixedDelay(
+            pool::houseKeep,
+            period,
+            period,
+            TimeUnit.MILLISECONDS
+        );
+        return pool;
+    }
+
+    Connection acquire() throws SQLException
+    {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        final long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(
+                config.acquireTimeout().toNanos(),
+                TimeUnit.NANOSECONDS
+            )) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(
+                    "Timed out after " + config.acquireTimeout()
+                        + " waiting for a pooled connection"
+                );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = pollIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            leased.put(pooled.connection, pooled);
+            acquired.increment();
+            return pooled.connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(final Connection connection) throws SQLException
+    {
+        final PooledConnection pooled = leased.remove(connection);
+        if (pooled == null) {
+            connection.close();
+            return;
+        }
+
+        try {
+            if (closed || connection.isClosed() || isExpired(pooled, now())) {
+                discard(pooled);
+            } else {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                pooled.lastUsed = now();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * The number of connections that can be acquired without waiting.
+     */
+    int available()
+    {
+        return permits.availablePermits();
+    }
+
+    PoolStats stats()
+    {
+        final long[] histogram = new long[acquireWaitHistogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = acquireWaitHistogram[i].sum();
+        }
+        return new PoolStats(
+            leased.size(),
+            idle.size(),
+            total.get(),
+            permits.getQueueLength(),
+            acquired.sum(),
+            timeouts.sum(),
+            histogram
+        );
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection pollIdle()
+    {
+        final long now = now();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isExpired(pooled, now)) {
+                discard(pooled);
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private PooledConnection open() throws SQLException
+    {
+        final Connection connection = connectionFactory.get();
+        total.incrementAndGet();
+        return new PooledConnection(connection, now());
+    }
+
+    private void discard(final PooledConnection pooled)
+    {
+        total.decrementAndGet();
+        try {
+            onDiscard.accept(pooled.connection);
+            pooled.connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void fill() throws SQLException
+    {
+        while (!closed && total.get() < config.minSize()) {
+            idle.offerLast(open());
+        }
+    }
+
+    private void houseKeep()
+    {
+        final long now = now();
+        final long idleTimeout = config.idleTimeout().toMillis();
+        for (PooledConnection pooled : idle) {
+            final boolean evict = isExpired(pooled, now)
+                || (idleTimeout > 0
+                    && now - pooled.lastUsed > idleTimeout
+                    && total.get() > config.minSize());
+            if (evict && idle.removeFirstOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+        try {
+            fill();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private boolean isExpired(final PooledConnection pooled, final long now)
+    {
+        final long maxLifetime = config.maxLifetime().toMillis();
+        return maxLifetime > 0 && now - pooled.created > maxLifetime;
+    }
+
+    private void recordWait(final long nanos)
+    {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        final long[] bounds = PoolStats.ACQUIRE_WAIT_BOUNDS_MILLIS;
+        int bucket = 0;
+        while (bucket < bounds.length && millis > bounds[bucket]) {
+            bucket++;
+        }
+        acquireWaitHistogram[bucket].increment();
+    }
+
+    private static long housekeepingPeriodMillis(final PoolConfig config)
+    {
+        long period = 30_000;
+        for (long timeout : new long[] {
+            config.idleTimeout().toMillis(),
+            config.maxLifetime().toMillis()
+        }) {
+            if (timeout > 0) {
+                period = Math.min(period, Math.max(timeout / 2, 10));
+            }
+        }
+        return period;
+    }
+
+    private static long now()
+    {
+        return System.currentTimeMillis();
+    }
+
+    private static final class PooledConnection
+    {
+        private final Connection connection;
+
+        private final long created;
+
+        private volatile long lastUsed;
+
+        private PooledConnection(final Connection connection, final long created)
+        {
+            this.connection = connection;
+            this.created = created;
+            this.lastUsed = created;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What Repository.Live keeps about a connection between commands.
+ */
+final class ConnectionState implements AutoCloseable
+{
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final StatementCache statements;
+
+    private final Map<Statement, Running> running = new ConcurrentHashMap<>();
+
+    private volatile long deadline = NO_DEADLINE;
+
+    private volatile int transactionDepth = 0;
+
+    ConnectionState(final StatementCache statements)
+    {
+        this.statements = statements;
+    }
+
+    PreparedStatement prepare(
+        final Connection connection,
+        final StatementCache.Key key
+    ) throws SQLException
+    {
+        return statements == null
+            ? key.prepare(connection)
+            : statements.prepare(connection, key);
+    }
+
+    void release(
+        final StatementCache.Key key,
+        final PreparedStatement statement
+    ) throws SQLException
+    {
+        if (statements == null) {
+            statement.close();
+        } else {
+            statements.release(key, statement);
+        }
+    }
+
+    /**
+     * The {@link System#nanoTime()} the commands on the connection have to
+     * finish by, or {@link #NO_DEADLINE}.
+     */
+    long deadline()
+    {
+        return deadline;
+    }
+
+    void deadline(final long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /**
+     * The number of open transactions on the connection, the nested ones
+     * included.
+     */
+    int transactionDepth()
+    {
+        return transactionDepth;
+    }
+
+    void enterTransaction()
+    {
+        transactionDepth++;
+    }
+
+    void exitTransaction()
+    {
+        transactionDepth--;
+    }
+
+    /**
+     * Registers the statement as running on the current thread until the
+     * {@link System#nanoTime()} {@code deadline}, or {@link #NO_DEADLINE}.
+     */
+    void started(final Statement statement, final long deadline)
+    {
+        running.put(statement, new Running(Thread.currentThread(), deadline));
+    }
+
+    void finished(final Statement statement)
+    {
+        running.remove(statement);
+    }
+
+    /**
+     * Cancels the statements that are still executing, e.g. because the
+     * command using the connection was interrupted.
+     */
+    void cancelRunning()
+    {
+        running.forEach((statement, run) -> {
+            if (running.remove(statement, run)) {
+                cancel(statement);
+            }
+        });
+    }
+
+    /**
+     * Cancels the statements that are past their deadline at {@code now},
+     * or whose thread was interrupted.
+     */
+    void cancelOverdue(final long now)
+    {
+        running.forEach((statement, run) -> {
+            if (run.isOverdue(now) && running.remove(statement, run)) {
+                cancel(statement);
+            }
+        });
+    }
+
+    private static void cancel(final Statement statement)
+    {
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (statements != null) {
+            statements.close();
+        }
+    }
+
+    private record Running(Thread thread, long deadline)
+    {
+        private boolean isOverdue(final long now)
+        {
+            return thread.isInterrupted()
+                || (deadline != NO_DEADLINE && now - deadline >= 0);
+        }
+    }
+}
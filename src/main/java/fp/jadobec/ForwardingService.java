@@ -0,0 +1,301 @@
+package fp.jadobec;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import fp.io.IO;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.ThrowingConsumer;
+
+/**
+ * A Service that forwards every call to another one. Decorators extend it
+ * and override only the calls they change.
+ */
+public abstract class ForwardingService implements Repository.Service
+{
+    protected final Repository.Service delegate;
+
+    protected ForwardingService(final Repository.Service delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <T> IO<Failure, T> use(final IO<Failure, T> command)
+    {
+        return delegate.use(command);
+    }
+
+    @Override
+    public <T> IO<Failure, T> querySingle(
+        final String sql,
+        final Extractor<T> createObject,
+        final Object... params
+    )
+    {
+        return delegate.querySingle(sql, createObject, params);
+    }
+
+    @Override
+    public <T> IO<Failure, T> querySinglePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject
+    )
+    {
+        return delegate.querySinglePrepared(sql, prepare, createObject);
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> query(
+        final String sql,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return delegate.query(sql, createObject, fn, params);
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> queryPrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return delegate.queryPrepared(sql, prepare, createObject, fn);
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> query(
+        final String sql,
+        final QueryOptions options,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return delegate.query(sql, options, createObject, fn, params);
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> queryPrepared(
+        final String sql,
+        final QueryOptions options,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return delegate.queryPrepared(sql, options, prepare, createObject, fn);
+    }
+
+    @Override
+    public <T> IO<Failure, Flow.Publisher<T>> queryPublisher(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject
+    )
+    {
+        return delegate.queryPublisher(sql, prepare, createObject);
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> parallelScan(
+        final String sql,
+        final String keyColumn,
+        final List<KeyRange> ranges,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return delegate.parallelScan(sql, keyColumn, ranges, createObject, fn);
+    }
+
+    @Override
+    public <R, T, K> IO<Failure, R> streamByKeyset(
+        final String sql,
+        final K initialKey,
+        final Function<T, K> keyOf,
+        final Extractor<T> createObject,
+        final int pageSize,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return delegate.streamByKeyset(
+            sql,
+            initialKey,
+            keyOf,
+            createObject,
+            pageSize,
+            fn
+        );
+    }
+
+    @Override
+    public IO<Failure, ColumnarResult> queryColumnar(
+        final String sql,
+        final Object... params
+    )
+    {
+        return delegate.queryColumnar(sql, params);
+    }
+
+    @Override
+    public IO<Failure, Integer> update(final String sql, final Object... params)
+    {
+        return delegate.update(sql, params);
+    }
+
+    @Override
+    public IO<Failure, Integer> updatePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return delegate.updatePrepared(sql, prepare);
+    }
+
+    @Override
+    public IO<Failure, Long> execute(final String sql, final Object... params)
+    {
+        return delegate.execute(sql, params);
+    }
+
+    @Override
+    public IO<Failure, Long> executePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return delegate.executePrepared(sql, prepare);
+    }
+
+    @Override
+    public IO<Failure, Long> insertReturningKey(
+        final String sql,
+        final Object... params
+    )
+    {
+        return delegate.insertReturningKey(sql, params);
+    }
+
+    @Override
+    public <T> IO<Failure, List<Record>> insertReturningKeys(
+        final String sql,
+        final List<String> keyColumns,
+        final Iterable<T> rows,
+        final Binder<T> binder
+    )
+    {
+        return delegate.insertReturningKeys(sql, keyColumns, rows, binder);
+    }
+
+    @Override
+    public IO<Failure, Long> bulkInsert(
+        final String table,
+        final Stream<Record> records
+    )
+    {
+        return delegate.bulkInsert(table, records);
+    }
+
+    @Override
+    public IO<Failure, Integer> batchUpdate(final String... sqls)
+    {
+        return delegate.batchUpdate(sqls);
+    }
+
+    @Override
+    public <T> IO<Failure, int[]> batchUpdatePrepared(
+        final String sql,
+        final Iterable<T> rows,
+        final Binder<T> binder,
+        final int chunkSize
+    )
+    {
+        return delegate.batchUpdatePrepared(sql, rows, binder, chunkSize);
+    }
+
+    @Override
+    public IO<Failure, StatementCacheStats> statementCacheStats()
+    {
+        return delegate.statementCacheStats();
+    }
+
+    @Override
+    public IO<Failure, RetryStats> retryStats()
+    {
+        return delegate.retryStats();
+    }
+
+    @Override
+    public IO<Failure, PoolStats> poolStats()
+    {
+        return delegate.poolStats();
+    }
+
+    @Override
+    public <T> IO<Failure, T> transaction(final IO<Failure, T> dbCommand)
+    {
+        return delegate.transaction(dbCommand);
+    }
+
+    @Override
+    public <T> IO<Failure, T> withTimeout(
+        final Duration timeout,
+        final IO<Failure, T> dbCommand
+    )
+    {
+        return delegate.withTimeout(timeout, dbCommand);
+    }
+
+    @Override
+    public <T> IO<Failure, Stream<T>> mapToStream(final Stream<T> stream)
+    {
+        return delegate.mapToStream(stream);
+    }
+
+    @Override
+    public <T> IO<Failure, Stream<T>> iterateToStreamWithFailure(
+        final Iterator<Either<Failure, T>> iterator
+    )
+    {
+        return delegate.iterateToStreamWithFailure(iterator);
+    }
+
+    @Override
+    public <T> IO<Failure, List<T>> mapToList(final Stream<T> stream)
+    {
+        return delegate.mapToList(stream);
+    }
+
+    @Override
+    public <F, R, U> IO<F, Stream<Either<F, R>>> mapStreamEither(
+        final IO<F, Stream<Either<F, U>>> io,
+        final Function<U, IO<F, R>> mapper
+    )
+    {
+        return delegate.mapStreamEither(io, mapper);
+    }
+
+    @Override
+    public <R, U> IO<Failure, Stream<Either<Failure, R>>> mapStreamEitherPar(
+        final IO<Failure, Stream<Either<Failure, U>>> io,
+        final Function<U, IO<Failure, R>> mapper,
+        final int parallelism,
+        final Class<?>... passed
+    )
+    {
+        return delegate.mapStreamEitherPar(io, mapper, parallelism, passed);
+    }
+}
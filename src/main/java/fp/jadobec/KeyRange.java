@@ -0,0 +1,140 @@
+package fp.jadobec;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fp.io.Cause;
+import fp.io.IO;
+import fp.util.Failure;
+import fp.util.GeneralFailure;
+
+/**
+ * The keys from {@code from}, inclusive, to {@code to}, exclusive, of a
+ * {@code parallelScan}. A null bound is unbounded. Rows with a null key
+ * are in no range.
+ */
+public record KeyRange(Object from, Object to)
+{
+    public static KeyRange all()
+    {
+        return new KeyRange(null, null);
+    }
+
+    /**
+     * The ranges between the bounds, and below the first and above the
+     * last bound, e.g. {@code between(100, 200)} is {@code [-, 100)},
+     * {@code [100, 200)} and {@code [200, -)}.
+     */
+    public static List<KeyRange> between(final Object... bounds)
+    {
+        final List<KeyRange> ranges = new ArrayList<>(bounds.length + 1);
+        Object from = null;
+        for (Object bound : bounds) {
+            ranges.add(new KeyRange(from, bound));
+            from = bound;
+        }
+        ranges.add(new KeyRange(from, null));
+        return ranges;
+    }
+
+    /**
+     * Splits the keys between the least and the greatest integer key of
+     * the column into {@code count} ranges of the same width. It suits
+     * keys spread evenly, e.g. sequence ids.
+     */
+    public static IO<Failure, List<KeyRange>> split(
+        final String table,
+        final String column,
+        final int count
+    )
+    {
+        if (count < 1) {
+            return wrongCount(count);
+        }
+        return Repository.querySingle(
+            "SELECT MIN(" + column + "), MAX(" + column + ") FROM " + table,
+            rs -> {
+                final long min = rs.getLong(1);
+                if (rs.wasNull()) {
+                    return List.of(all());
+                }
+                final long max = rs.getLong(2);
+                final long width = Math.max(1, (max - min) / count + 1);
+                final List<Object> bounds = new ArrayList<>();
+                long bound = min + width;
+                while (bound <= max && bounds.size() < count - 1) {
+                    bounds.add(bound);
+                    bound += width;
+                }
+                return between(bounds.toArray());
+            }
+        );
+    }
+
+    /**
+     * Splits the keys of the column into {@code count} ranges of about the
+     * same number of rows, by the {@code NTILE} window function. It reads
+     * the index of the column once.
+     */
+    public static IO<Failure, List<KeyRange>> ntile(
+        final String table,
+        final String column,
+        final int count
+    )
+    {
+        if (count < 1) {
+            return wrongCount(count);
+        }
+        return Repository.query(
+            "SELECT MIN(k) FROM ("
+                + "SELECT " + column + " AS k, NTILE(" + count + ") OVER (ORDER BY "
+                + column + ") AS tile FROM " + table
+                + " WHERE " + column + " IS NOT NULL"
+                + ") tiles GROUP BY tile ORDER BY 1",
+            rs -> rs.getObject(1),
+            starts -> IO.succeed(between(
+                starts.skip(1).distinct().toArray()
+            ))
+        );
+    }
+
+    private static IO<Failure, List<KeyRange>> wrongCount(final int count)
+    {
+        return IO.fail(Cause.fail(GeneralFailure.of("Wrong range count: " + count)));
+    }
+
+    /**
+     * The condition of the range on the column, with a parameter for
+     * every bound.
+     */
+    String condition(final String column)
+    {
+        if (from == null && to == null) {
+            return "1 = 1";
+        } else if (to == null) {
+            return column + " >= ?";
+        } else if (from == null) {
+            return column + " < ?";
+        }
+        return column + " >= ? AND " + column + " < ?";
+    }
+
+    /**
+     * Binds the bounds from the parameter {@code index}, and returns the
+     * index after them.
+     */
+    int bind(final PreparedStatement ps, final int index) throws SQLException
+    {
+        int next = index;
+        for (Object bound : Arrays.asList(from, to)) {
+            if (bound != null) {
+                Params.bind(ps, next++, bound, Types.NULL);
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,111 @@
+package fp.jadobec;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import fp.util.ThrowingFunction;
+
+/**
+ * The rows of a query read page by page, every page after the key of the
+ * last row of the previous one. The next page is read on the executor
+ * while the rows of the current one are consumed. A page shorter than
+ * {@code pageSize} is the last one.
+ */
+final class KeysetIterator<T, K> implements Iterator<T>, AutoCloseable
+{
+    private final ThrowingFunction<K, List<T>, Exception> page;
+
+    private final Function<T, K> keyOf;
+
+    private final int pageSize;
+
+    private final Executor executor;
+
+    private Iterator<T> rows = Collections.emptyIterator();
+
+    private CompletableFuture<List<T>> nextPage;
+
+    KeysetIterator(
+        final K initialKey,
+        final ThrowingFunction<K, List<T>, Exception> page,
+        final Function<T, K> keyOf,
+        final int pageSize,
+        final Executor executor
+    )
+    {
+        this.page = page;
+        this.keyOf = keyOf;
+        this.pageSize = pageSize;
+        this.executor = executor;
+        this.nextPage = fetch(initialKey);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (!rows.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+            final List<T> current = await(nextPage);
+            nextPage = current.size() < pageSize
+                ? null
+                : fetch(keyOf.apply(current.get(current.size() - 1)));
+            rows = current.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return rows.next();
+    }
+
+    /**
+     * A page being read is left to finish, it releases its connection
+     * itself.
+     */
+    @Override
+    public void close()
+    {
+        nextPage = null;
+        rows = Collections.emptyIterator();
+    }
+
+    private CompletableFuture<List<T>> fetch(final K key)
+    {
+        final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(page.apply(key));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static <T> List<T> await(final CompletableFuture<List<T>> page)
+    {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new RuntimeException(e.getCause());
+        }
+    }
+}
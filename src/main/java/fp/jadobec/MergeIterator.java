@@ -0,0 +1,73 @@
+package fp.jadobec;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sorted iterators into one sorted iterator, taking the least head
+ * of them each time. Equal elements come in the order of the iterators.
+ */
+final class MergeIterator<T> implements Iterator<T>
+{
+    private final PriorityQueue<Head<T>> heads;
+
+    MergeIterator(
+        final List<? extends Iterator<T>> sources,
+        final Comparator<? super T> comparator
+    )
+    {
+        final Comparator<Head<T>> byValue =
+            (left, right) -> comparator.compare(left.value, right.value);
+        this.heads = new PriorityQueue<>(
+            Math.max(1, sources.size()),
+            byValue.thenComparingInt(head -> head.source)
+        );
+        for (int i = 0; i < sources.size(); i++) {
+            advance(new Head<>(sources.get(i), i));
+        }
+    }
+
+    private void advance(final Head<T> head)
+    {
+        if (head.iterator.hasNext()) {
+            head.value = head.iterator.next();
+            heads.add(head);
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next()
+    {
+        final Head<T> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        final T value = head.value;
+        advance(head);
+        return value;
+    }
+
+    private static final class Head<T>
+    {
+        private final Iterator<T> iterator;
+
+        private final int source;
+
+        private T value;
+
+        private Head(final Iterator<T> iterator, final int source)
+        {
+            this.iterator = iterator;
+            this.source = source;
+        }
+    }
+}
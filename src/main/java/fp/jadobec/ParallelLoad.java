@@ -0,0 +1,497 @@
+package fp.jadobec;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import fp.io.Cause;
+import fp.io.IO;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Right;
+
+/**
+ * Loads a stream of rows over several connections at once, e.g.
+ *
+ * <pre>
+ * final ParallelLoad&lt;Person&gt; load = ParallelLoad.of(
+ *     "INSERT INTO person(id, name, age) VALUES(?, ?, ?)",
+ *     (ps, person) -&gt; { ... }
+ * ).withPartitions(4).withCommitEvery(1000);
+ *
+ * final IO&lt;Failure, LoadReport&gt; report = load.run(persons);
+ * </pre>
+ *
+ * The rows are split into {@code partitions} by the partitioner, or by
+ * chunks in turn if there is none. Every partition runs on a connection of
+ * its own and commits a transaction every {@code commitEvery} rows.
+ * <p>
+ * A failed partition stops, the others go on. The report has the number
+ * of committed rows per partition; {@link #resume} with the checkpoint of
+ * the report skips them, so the same rows, in the same order, can be
+ * loaded again from the last committed chunk. It needs a partitioner that
+ * puts a row into the same partition every time, which chunks in turn do.
+ * <p>
+ * The rows of a partition not asking for them yet are buffered, up to
+ * {@code bufferedChunks} chunks per partition. A partition reading a row
+ * for a full buffer commits the rows it has, or waits for the buffer to be
+ * drained, and fails after {@code maxWait}. So the pool should have a
+ * connection for every partition: a partition waiting for its connection
+ * does not drain its buffer.
+ */
+public final class ParallelLoad<T>
+{
+    private final String sql;
+
+    private final Binder<T> binder;
+
+    private final int partitions;
+
+    private final int commitEvery;
+
+    private final ToIntFunction<T> partitioner;
+
+    private final Consumer<LoadProgress> progress;
+
+    private final Map<Integer, Long> checkpoint;
+
+    private final int bufferedChunks;
+
+    private final Duration maxWait;
+
+    private ParallelLoad(
+        final String sql,
+        final Binder<T> binder,
+        final int partitions,
+        final int commitEvery,
+        final ToIntFunction<T> partitioner,
+        final Consumer<LoadProgress> progress,
+        final Map<Integer, Long> checkpoint,
+        final int bufferedChunks,
+        final Duration maxWait
+    )
+    {
+        this.sql = sql;
+        this.binder = binder;
+        this.partitions = partitions;
+        this.commitEvery = commitEvery;
+        this.partitioner = partitioner;
+        this.progress = progress;
+        this.checkpoint = checkpoint;
+        this.bufferedChunks = bufferedChunks;
+        this.maxWait = maxWait;
+    }
+
+    public static <T> ParallelLoad<T> of(final String sql, final Binder<T> binder)
+    {
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            4,
+            1000,
+            null,
+            loadProgress -> {},
+            Collections.emptyMap(),
+            2,
+            Duration.ofMinutes(1)
+        );
+    }
+
+    public ParallelLoad<T> withPartitions(final int partitions)
+    {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Wrong partitions: " + partitions);
+        }
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            checkpoint,
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    public ParallelLoad<T> withCommitEvery(final int commitEvery)
+    {
+        if (commitEvery < 1) {
+            throw new IllegalArgumentException("Wrong commit size: " + commitEvery);
+        }
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            checkpoint,
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    /**
+     * The partition of a row is {@code partitioner} modulo the number of
+     * partitions.
+     */
+    public ParallelLoad<T> withPartitioner(final ToIntFunction<T> partitioner)
+    {
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            checkpoint,
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    /**
+     * Called after every commit, from the thread of the partition.
+     */
+    public ParallelLoad<T> withProgress(final Consumer<LoadProgress> progress)
+    {
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            checkpoint,
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    /**
+     * Skips the rows of every partition that were committed by the load
+     * of the checkpoint.
+     */
+    public ParallelLoad<T> resume(final Map<Integer, Long> checkpoint)
+    {
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            Map.copyOf(checkpoint),
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    /**
+     * The most chunks of rows buffered for a partition not asking for
+     * them yet.
+     */
+    public ParallelLoad<T> withBufferedChunks(final int bufferedChunks)
+    {
+        if (bufferedChunks < 1) {
+            throw new IllegalArgumentException(
+                "Wrong buffered chunks: " + bufferedChunks
+            );
+        }
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            checkpoint,
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    /**
+     * The longest time a partition waits for the full buffer of another
+     * partition to be drained.
+     */
+    public ParallelLoad<T> withMaxWait(final Duration maxWait)
+    {
+        if (maxWait.isNegative() || maxWait.isZero()) {
+            throw new IllegalArgumentException("Wrong max wait: " + maxWait);
+        }
+        return new ParallelLoad<>(
+            sql,
+            binder,
+            partitions,
+            commitEvery,
+            partitioner,
+            progress,
+            checkpoint,
+            bufferedChunks,
+            maxWait
+        );
+    }
+
+    /**
+     * Loads the rows; the stream is closed when the load ends, whether it
+     * succeeds, fails or is interrupted.
+     */
+    public IO<Failure, LoadReport> run(final Stream<T> rows)
+    {
+        final IO<Failure, Router> start = IO.effectTotal(() -> new Router(rows));
+        return IO.bracket(
+            start,
+            router -> IO.effectTotal(router::close),
+            router -> Repository.mapStreamEitherPar(
+                IO.succeed(partitionIndexes()),
+                partition -> loadPartition(router, partition),
+                partitions
+            ).map(results ->
+                report(router, results.collect(Collectors.toList()))
+            )
+        );
+    }
+
+    private Stream<Either<Failure, Integer>> partitionIndexes()
+    {
+        return IntStream.range(0, partitions).mapToObj(Right::of);
+    }
+
+    private long skipped(final int partition)
+    {
+        return checkpoint.getOrDefault(partition, 0L);
+    }
+
+    private IO<Failure, Long> loadPartition(
+        final Router router,
+        final int partition
+    )
+    {
+        return loadChunks(router, partition, skipped(partition))
+            .recover(failure -> {
+                router.failed(partition);
+                return IO.fail(Cause.fail(failure));
+            });
+    }
+
+    private IO<Failure, Long> loadChunks(
+        final Router router,
+        final int partition,
+        final long committed
+    )
+    {
+        final IO<Failure, List<T>> next = IO.effect(() -> router.next(partition));
+        return next.blocking().flatMap(chunk -> {
+            if (chunk.isEmpty()) {
+                return IO.succeed(committed);
+            }
+            final long total = committed + chunk.size();
+            return Repository.transaction(
+                Repository.batchUpdatePrepared(sql, chunk, binder, chunk.size())
+            ).flatMap(counts -> {
+                router.committed(partition, total);
+                progress.accept(new LoadProgress(partition, total));
+                return loadChunks(router, partition, total);
+            });
+        });
+    }
+
+    private LoadReport report(
+        final Router router,
+        final List<Either<Failure, Long>> results
+    )
+    {
+        final Map<Integer, Long> committed = new LinkedHashMap<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            committed.put(partition, router.committed(partition));
+        }
+        return new LoadReport(results, Collections.unmodifiableMap(committed));
+    }
+
+    /**
+     * The committed rows of a partition, counted from the start of the
+     * first load, so it includes the rows of the checkpoint.
+     */
+    public record LoadProgress(int partition, long committedRows)
+    {
+    }
+
+    /**
+     * The result of every partition, {@code Right} with its committed rows
+     * or {@code Left} with its failure, and the checkpoint to resume from.
+     */
+    public record LoadReport(
+        List<Either<Failure, Long>> partitions,
+        Map<Integer, Long> checkpoint
+    )
+    {
+        public boolean succeeded()
+        {
+            return partitions.stream().allMatch(Either::isRight);
+        }
+
+        public long committedRows()
+        {
+            return checkpoint.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    /**
+     * Deals the rows of the source to the partitions. A partition asking
+     * for its next chunk reads the source until it has one; the rows of
+     * the other partitions are buffered until they ask for them. A row for
+     * a full buffer is held back until the buffer is drained.
+     */
+    private final class Router
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition drained = lock.newCondition();
+
+        private final Stream<T> rows;
+
+        private final Iterator<T> source;
+
+        private final List<ArrayDeque<T>> buffers = new ArrayList<>();
+
+        private final long[] seen;
+
+        private final long[] committed;
+
+        private final boolean[] failed;
+
+        private final int capacity = bufferedChunks * commitEvery;
+
+        private long index = 0;
+
+        private T held = null;
+
+        private int heldPartition = -1;
+
+        private Router(final Stream<T> rows)
+        {
+            this.rows = rows;
+            this.source = rows.iterator();
+            this.seen = new long[partitions];
+            this.committed = new long[partitions];
+            this.failed = new boolean[partitions];
+            for (int partition = 0; partition < partitions; partition++) {
+                buffers.add(new ArrayDeque<>());
+                committed[partition] = skipped(partition);
+            }
+        }
+
+        private List<T> next(final int partition)
+            throws InterruptedException, TimeoutException
+        {
+            lock.lock();
+            try {
+                final ArrayDeque<T> buffer = buffers.get(partition);
+                long nanos = maxWait.toNanos();
+                while (buffer.size() < commitEvery
+                    && (held != null || source.hasNext())
+                ) {
+                    if (held == null) {
+                        read(source.next());
+                    } else if (failed[heldPartition]
+                        || buffers.get(heldPartition).size() < capacity
+                    ) {
+                        route();
+                    } else if (!buffer.isEmpty()) {
+                        break;
+                    } else if (nanos <= 0) {
+                        throw new TimeoutException(
+                            "Partition " + heldPartition
+                                + " did not take its rows in " + maxWait
+                        );
+                    } else {
+                        nanos = drained.awaitNanos(nanos);
+                    }
+                }
+                final List<T> chunk = new ArrayList<>(
+                    Math.min(commitEvery, buffer.size())
+                );
+                while (chunk.size() < commitEvery && !buffer.isEmpty()) {
+                    chunk.add(buffer.poll());
+                }
+                drained.signalAll();
+                return chunk;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void read(final T row)
+        {
+            final int partition = partitioner == null
+                ? (int) ((index++ / commitEvery) % partitions)
+                : Math.floorMod(partitioner.applyAsInt(row), partitions);
+            if (seen[partition]++ >= skipped(partition)) {
+                held = row;
+                heldPartition = partition;
+            }
+        }
+
+        private void route()
+        {
+            if (!failed[heldPartition]) {
+                buffers.get(heldPartition).add(held);
+            }
+            held = null;
+        }
+
+        private void committed(final int partition, final long rows)
+        {
+            lock.lock();
+            try {
+                committed[partition] = rows;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long committed(final int partition)
+        {
+            lock.lock();
+            try {
+                return committed[partition];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void failed(final int partition)
+        {
+            lock.lock();
+            try {
+                failed[partition] = true;
+                buffers.get(partition).clear();
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Void close()
+        {
+            rows.close();
+            return null;
+        }
+    }
+}
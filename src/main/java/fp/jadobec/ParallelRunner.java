@@ -0,0 +1,346 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.ExceptionFailure;
+import fp.util.Failure;
+import fp.util.Left;
+
+/**
+ * Runs IOs and background tasks on threads of its own, on a given
+ * executor or on virtual threads. The IOs run on a given runtime or on a
+ * platform of its own. The platform and the threads are created on first
+ * use and stopped by {@link #close()}; a given executor or runtime is left
+ * running.
+ * <p>
+ * Virtual threads are created by reflection, so the library still runs on
+ * Java 17; asking for them there fails with
+ * {@code UnsupportedOperationException}.
+ */
+final class ParallelRunner implements AutoCloseable
+{
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Executor givenExecutor;
+
+    private final ThreadFactory virtualThreadFactory;
+
+    private final Runtime givenRuntime;
+
+    private DefaultPlatform platform;
+
+    private Runtime runtime;
+
+    private Executor executor;
+
+    private boolean closed = false;
+
+    private ParallelRunner(
+        final Executor givenExecutor,
+        final ThreadFactory virtualThreadFactory,
+        final Runtime givenRuntime
+    )
+    {
+        this.givenExecutor = givenExecutor;
+        this.virtualThreadFactory = virtualThreadFactory;
+        this.givenRuntime = givenRuntime;
+    }
+
+    static ParallelRunner create()
+    {
+        return new ParallelRunner(null, null, null);
+    }
+
+    ParallelRunner onExecutor(final Executor executor)
+    {
+        return new ParallelRunner(executor, null, givenRuntime);
+    }
+
+    ParallelRunner onVirtualThreads()
+    {
+        return new ParallelRunner(null, virtualThreadFactory(), givenRuntime);
+    }
+
+    ParallelRunner withRuntime(final Runtime runtime)
+    {
+        return new ParallelRunner(givenExecutor, virtualThreadFactory, runtime);
+    }
+
+    /**
+     * {@code Thread.ofVirtual().name("jadobec-virtual-", 1).factory()}
+     */
+    private static ThreadFactory virtualThreadFactory()
+    {
+        try {
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Object named = builderType
+                .getMethod("name", String.class, long.class)
+                .invoke(builder, "jadobec-virtual-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(named);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(
+                "Virtual threads need Java 21 or later",
+                e
+            );
+        }
+    }
+
+    /**
+     * {@code Executors.newThreadPerTaskExecutor(threadFactory)}
+     */
+    private static ExecutorService threadPerTaskExecutor(
+        final ThreadFactory threadFactory
+    )
+    {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(
+                "Virtual threads need Java 21 or later",
+                e
+            );
+        }
+    }
+
+    /**
+     * Maps the right values of the stream with at most {@code parallelism}
+     * mapper IOs running at once. The results keep the order of the stream,
+     * failed elements and failed mappers give left values.
+     * <p>
+     * If reading the stream fails or the thread is interrupted, the mappers
+     * not started yet are skipped. The running ones are not stopped, an IO
+     * on another runtime can not be interrupted from here; they run to
+     * their end and their results are dropped.
+     */
+    <U, R> Stream<Either<Failure, R>> map(
+        final Stream<Either<Failure, U>> stream,
+        final Function<U, IO<Failure, R>> mapper,
+        final int parallelism
+    ) throws InterruptedException
+    {
+        final Semaphore permits = new Semaphore(parallelism);
+        final List<CompletableFuture<Either<Failure, R>>> results = new ArrayList<>();
+        final Iterator<Either<Failure, U>> iterator = stream.iterator();
+
+        try {
+            while (iterator.hasNext()) {
+                final Either<Failure, U> element = iterator.next();
+                if (element.isRight()) {
+                    permits.acquire();
+                    results.add(submit(() -> mapper.apply(element.right()), permits));
+                } else {
+                    results.add(CompletableFuture.completedFuture(
+                        Left.of(element.left())
+                    ));
+                }
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            results.forEach(result -> result.cancel(false));
+            throw e;
+        }
+
+        final Stream.Builder<Either<Failure, R>> builder = Stream.builder();
+        for (CompletableFuture<Either<Failure, R>> result : results) {
+            builder.accept(result.join());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Runs the work on the given executor or on a virtual thread and
+     * waits for it, or runs it on the calling thread if there is neither.
+     * <p>
+     * If the waiting thread is interrupted, the thread of the work is
+     * interrupted too. A result the work still returns after that is
+     * passed to {@code abandon}, e.g. to give back a connection nobody
+     * waits for any more.
+     */
+    <T> T call(final Callable<T> work, final Consumer<T> abandon) throws Exception
+    {
+        if (givenExecutor == null && virtualThreadFactory == null) {
+            return work.call();
+        }
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicReference<Thread> worker = new AtomicReference<>();
+        execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            worker.set(Thread.currentThread());
+            try {
+                final T value = work.call();
+                if (!result.complete(value)) {
+                    abandon.accept(value);
+                }
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (worker) {
+                    worker.set(null);
+                    Thread.interrupted();
+                }
+            }
+        });
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            if (!result.completeExceptionally(e)) {
+                Thread.currentThread().interrupt();
+                return resultOf(result);
+            }
+            synchronized (worker) {
+                final Thread thread = worker.get();
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw rethrown(e);
+        }
+    }
+
+    private static <T> T resultOf(final CompletableFuture<T> result)
+        throws Exception
+    {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw rethrown(e);
+        }
+    }
+
+    private static Exception rethrown(final ExecutionException e)
+    {
+        if (e.getCause() instanceof Error error) {
+            throw error;
+        }
+        return e.getCause() instanceof Exception exception ? exception : e;
+    }
+
+    void execute(final Runnable task)
+    {
+        final Executor currentExecutor;
+        lock.lock();
+        try {
+            start();
+            currentExecutor = executor;
+        } finally {
+            lock.unlock();
+        }
+        currentExecutor.execute(task);
+    }
+
+    private <R> CompletableFuture<Either<Failure, R>> submit(
+        final Supplier<IO<Failure, R>> command,
+        final Semaphore permits
+    )
+    {
+        final Runtime currentRuntime;
+        final Executor currentExecutor;
+        lock.lock();
+        try {
+            start();
+            if (runtime == null) {
+                runtime = givenRuntime;
+            }
+            if (runtime == null) {
+                platform = new DefaultPlatform();
+                runtime = new DefaultRuntime(null, platform);
+            }
+            currentRuntime = runtime;
+            currentExecutor = executor;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Cause.resultFlatten(
+                        currentRuntime.unsafeRun(command.get())
+                    );
+                } catch (RuntimeException e) {
+                    return Left.of(ExceptionFailure.of(e));
+                } finally {
+                    permits.release();
+                }
+            }, currentExecutor);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void start()
+    {
+        if (closed) {
+            throw new IllegalStateException("Parallel runner is closed");
+        }
+        if (executor == null) {
+            if (givenExecutor != null) {
+                executor = givenExecutor;
+            } else if (virtualThreadFactory != null) {
+                executor = threadPerTaskExecutor(virtualThreadFactory);
+            } else {
+                executor = Executors.newCachedThreadPool(runnable -> {
+                    final Thread thread = new Thread(
+                        runnable,
+                        "jadobec-parallel-" + threadCount.incrementAndGet()
+                    );
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try {
+            closed = true;
+            if (executor != null) {
+                if (executor != givenExecutor) {
+                    ((ExecutorService) executor).shutdown();
+                }
+            }
+            if (platform != null) {
+                platform.shutdown();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
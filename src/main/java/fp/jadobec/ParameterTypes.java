@@ -0,0 +1,68 @@
+package fp.jadobec;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds {@code Object...} parameters with typed setters. The SQL types of
+ * the parameters are read from the ParameterMetaData only when a null has
+ * to be bound, and are cached per SQL text.
+ */
+final class ParameterTypes
+{
+    private static final int MAX_SIZE = 1024;
+
+    private static final int[] UNKNOWN = new int[0];
+
+    private final Map<String, int[]> types = new ConcurrentHashMap<>();
+
+    void bind(
+        final String sql,
+        final PreparedStatement ps,
+        final Object[] params
+    ) throws SQLException
+    {
+        int[] sqlTypes = null;
+        for (int i = 0; i < params.length; i++) {
+            int nullType = Types.NULL;
+            if (params[i] == null) {
+                if (sqlTypes == null) {
+                    sqlTypes = typesOf(sql, ps);
+                }
+                if (i < sqlTypes.length) {
+                    nullType = sqlTypes[i];
+                }
+            }
+            Params.bind(ps, i + 1, params[i], nullType);
+        }
+    }
+
+    private int[] typesOf(final String sql, final PreparedStatement ps)
+    {
+        final int[] cached = types.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+
+        int[] sqlTypes;
+        try {
+            final ParameterMetaData metaData = ps.getParameterMetaData();
+            sqlTypes = new int[metaData.getParameterCount()];
+            for (int i = 0; i < sqlTypes.length; i++) {
+                sqlTypes[i] = metaData.getParameterType(i + 1);
+            }
+        } catch (SQLException | RuntimeException e) {
+            sqlTypes = UNKNOWN;
+        }
+
+        if (types.size() >= MAX_SIZE) {
+            types.clear();
+        }
+        types.put(sql, sqlTypes);
+        return sqlTypes;
+    }
+}
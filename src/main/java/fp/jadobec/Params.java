@@ -0,0 +1,216 @@
+package fp.jadobec;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import fp.util.ThrowingConsumer;
+
+/**
+ * Typed statement parameters. Primitive values are kept unboxed and bound
+ * with their specific setter, so the driver does not have to infer the
+ * type. A Params can be cleared and filled again for the next statement.
+ *
+ * <pre>
+ * Repository.updatePrepared(
+ *     "UPDATE person SET name = ? WHERE id = ?",
+ *     Params.of().addString(name).addInt(id)
+ * );
+ * </pre>
+ */
+public final class Params implements ThrowingConsumer<PreparedStatement, SQLException>
+{
+    private static final byte INT = 1;
+
+    private static final byte LONG = 2;
+
+    private static final byte DOUBLE = 3;
+
+    private static final byte BOOLEAN = 4;
+
+    private static final byte STRING = 5;
+
+    private static final byte NULL = 6;
+
+    private static final byte OBJECT = 7;
+
+    private byte[] kinds;
+
+    private long[] primitives;
+
+    private Object[] objects;
+
+    private int size = 0;
+
+    private Params(final int capacity)
+    {
+        this.kinds = new byte[capacity];
+        this.primitives = new long[capacity];
+        this.objects = new Object[capacity];
+    }
+
+    public static Params of()
+    {
+        return new Params(8);
+    }
+
+    public static Params of(final int capacity)
+    {
+        return new Params(Math.max(capacity, 1));
+    }
+
+    public Params addInt(final int value)
+    {
+        return addPrimitive(INT, value);
+    }
+
+    public Params addLong(final long value)
+    {
+        return addPrimitive(LONG, value);
+    }
+
+    public Params addDouble(final double value)
+    {
+        return addPrimitive(DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public Params addBoolean(final boolean value)
+    {
+        return addPrimitive(BOOLEAN, value ? 1 : 0);
+    }
+
+    public Params addString(final String value)
+    {
+        return value == null
+            ? addNull(Types.VARCHAR)
+            : addObject(STRING, value);
+    }
+
+    public Params addNull(final int sqlType)
+    {
+        return addPrimitive(NULL, sqlType);
+    }
+
+    public Params add(final Object value)
+    {
+        return addObject(OBJECT, value);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public Params clear()
+    {
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        return this;
+    }
+
+    @Override
+    public void accept(final PreparedStatement ps) throws SQLException
+    {
+        for (int i = 0; i < size; i++) {
+            final int index = i + 1;
+            switch (kinds[i]) {
+                case INT -> ps.setInt(index, (int) primitives[i]);
+                case LONG -> ps.setLong(index, primitives[i]);
+                case DOUBLE -> ps.setDouble(index, Double.longBitsToDouble(primitives[i]));
+                case BOOLEAN -> ps.setBoolean(index, primitives[i] != 0);
+                case STRING -> ps.setString(index, (String) objects[i]);
+                case NULL -> ps.setNull(index, (int) primitives[i]);
+                default -> bind(ps, index, objects[i], Types.NULL);
+            }
+        }
+    }
+
+    /**
+     * Binds a value with the setter of its runtime type. A null value is
+     * bound as {@code nullType}, if it is known.
+     */
+    static void bind(
+        final PreparedStatement ps,
+        final int index,
+        final Object value,
+        final int nullType
+    ) throws SQLException
+    {
+        if (value == null) {
+            if (nullType == Types.NULL) {
+                ps.setObject(index, null);
+            } else {
+                ps.setNull(index, nullType);
+            }
+        } else if (value instanceof String string) {
+            ps.setString(index, string);
+        } else if (value instanceof Integer integer) {
+            ps.setInt(index, integer);
+        } else if (value instanceof Long longValue) {
+            ps.setLong(index, longValue);
+        } else if (value instanceof Double doubleValue) {
+            ps.setDouble(index, doubleValue);
+        } else if (value instanceof Boolean booleanValue) {
+            ps.setBoolean(index, booleanValue);
+        } else if (value instanceof BigDecimal decimal) {
+            ps.setBigDecimal(index, decimal);
+        } else if (value instanceof Short shortValue) {
+            ps.setShort(index, shortValue);
+        } else if (value instanceof Float floatValue) {
+            ps.setFloat(index, floatValue);
+        } else if (value instanceof byte[] bytes) {
+            ps.setBytes(index, bytes);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    private Params addPrimitive(final byte kind, final long value)
+    {
+        ensureCapacity();
+        kinds[size] = kind;
+        primitives[size] = value;
+        size++;
+        return this;
+    }
+
+    private Params addObject(final byte kind, final Object value)
+    {
+        ensureCapacity();
+        kinds[size] = kind;
+        objects[size] = value;
+        size++;
+        return this;
+    }
+
+    private void ensureCapacity()
+    {
+        if (size == kinds.length) {
+            final int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder params = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                params.append(", ");
+            }
+            switch (kinds[i]) {
+                case INT, LONG -> params.append(primitives[i]);
+                case DOUBLE -> params.append(Double.longBitsToDouble(primitives[i]));
+                case BOOLEAN -> params.append(primitives[i] != 0);
+                case NULL -> params.append("null");
+                default -> params.append(objects[i]);
+            }
+        }
+        return "Params(" + params + ")";
+    }
+}
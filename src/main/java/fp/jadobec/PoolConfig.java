@@ -0,0 +1,144 @@
+package fp.jadobec;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+public final class PoolConfig
+{
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final Duration idleTimeout;
+
+    private final Duration maxLifetime;
+
+    private final Duration acquireTimeout;
+
+    private PoolConfig(final Builder builder)
+    {
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.idleTimeout = builder.idleTimeout;
+        this.maxLifetime = builder.maxLifetime;
+        this.acquireTimeout = builder.acquireTimeout;
+    }
+
+    public static PoolConfig defaults()
+    {
+        return new Builder().build();
+    }
+
+    public static PoolConfig build(Consumer<Builder> factory)
+    {
+        final Builder builder = new Builder();
+        factory.accept(builder);
+        return builder.build();
+    }
+
+    public int minSize()
+    {
+        return minSize;
+    }
+
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    public Duration idleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    public Duration maxLifetime()
+    {
+        return maxLifetime;
+    }
+
+    public Duration acquireTimeout()
+    {
+        return acquireTimeout;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PoolConfig(minSize -> " + minSize
+            + ", maxSize -> " + maxSize
+            + ", idleTimeout -> " + idleTimeout
+            + ", maxLifetime -> " + maxLifetime
+            + ", acquireTimeout -> " + acquireTimeout + ")";
+    }
+
+    public static final class Builder
+    {
+        private int minSize = 0;
+
+        private int maxSize = 10;
+
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        private Duration maxLifetime = Duration.ofMinutes(30);
+
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+
+        private Builder()
+        {
+        }
+
+        public Builder minSize(int minSize)
+        {
+            this.minSize = minSize;
+            return this;
+        }
+
+        public Builder maxSize(int maxSize)
+        {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Idle connections above {@code minSize} are closed after this
+         * duration. {@link Duration#ZERO} disables idle eviction.
+         */
+        public Builder idleTimeout(Duration idleTimeout)
+        {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * Connections are retired after this duration, even if they are
+         * in constant use. {@link Duration#ZERO} disables retirement.
+         */
+        public Builder maxLifetime(Duration maxLifetime)
+        {
+            this.maxLifetime = maxLifetime;
+            return this;
+        }
+
+        public Builder acquireTimeout(Duration acquireTimeout)
+        {
+            this.acquireTimeout = acquireTimeout;
+            return this;
+        }
+
+        private PoolConfig build()
+        {
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+                throw new IllegalArgumentException(
+                    "Wrong pool size: min " + minSize + ", max " + maxSize
+                );
+            }
+            if (idleTimeout.isNegative()
+                || maxLifetime.isNegative()
+                || acquireTimeout.isNegative())
+            {
+                throw new IllegalArgumentException("Negative pool timeout");
+            }
+            return new PoolConfig(this);
+        }
+    }
+}
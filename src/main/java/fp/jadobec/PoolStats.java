@@ -0,0 +1,77 @@
+package fp.jadobec;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Snapshot of a connection pool. {@code acquireWaitHistogram[i]} counts the
+ * acquisitions that waited at most {@code ACQUIRE_WAIT_BOUNDS_MILLIS[i]}
+ * milliseconds, the last bucket counts the slower ones.
+ */
+public record PoolStats(
+    int active,
+    int idle,
+    int total,
+    int waiters,
+    long acquired,
+    long timeouts,
+    long[] acquireWaitHistogram
+)
+{
+    public static final long[] ACQUIRE_WAIT_BOUNDS_MILLIS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000
+    };
+
+    public PoolStats
+    {
+        acquireWaitHistogram = acquireWaitHistogram.clone();
+    }
+
+    @Override
+    public long[] acquireWaitHistogram()
+    {
+        return acquireWaitHistogram.clone();
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other instanceof PoolStats stats) {
+            return active == stats.active
+                && idle == stats.idle
+                && total == stats.total
+                && waiters == stats.waiters
+                && acquired == stats.acquired
+                && timeouts == stats.timeouts
+                && Arrays.equals(acquireWaitHistogram, stats.acquireWaitHistogram);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(
+            active,
+            idle,
+            total,
+            waiters,
+            acquired,
+            timeouts,
+            Arrays.hashCode(acquireWaitHistogram)
+        );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PoolStats(active -> " + active
+            + ", idle -> " + idle
+            + ", total -> " + total
+            + ", waiters -> " + waiters
+            + ", acquired -> " + acquired
+            + ", timeouts -> " + timeouts
+            + ", acquireWaitHistogram -> "
+            + Arrays.toString(acquireWaitHistogram) + ")";
+    }
+}
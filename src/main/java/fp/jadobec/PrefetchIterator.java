@@ -0,0 +1,147 @@
+package fp.jadobec;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a source iterator on a background thread into a bounded buffer.
+ * The producer waits while the buffer is full, so it is at most
+ * {@code bufferSize} elements ahead of the consumer.
+ * <p>
+ * The source is only used by the producer thread. {@link #close()} stops
+ * the producer and waits for it before it closes the source, so a result
+ * set is never closed while it is read.
+ */
+final class PrefetchIterator<T> implements Iterator<T>, AutoCloseable
+{
+    private static final Object END = new Object();
+
+    private static final Object NULL = new Object();
+
+    private static final long OFFER_WAIT_MILLIS = 10;
+
+    private final Iterator<T> source;
+
+    private final AutoCloseable sourceRelease;
+
+    private final ArrayBlockingQueue<Object> buffer;
+
+    private final CountDownLatch producerDone = new CountDownLatch(1);
+
+    private volatile boolean closed = false;
+
+    private Object next = null;
+
+    PrefetchIterator(
+        final Iterator<T> source,
+        final AutoCloseable sourceRelease,
+        final int bufferSize,
+        final Executor executor
+    )
+    {
+        this.source = source;
+        this.sourceRelease = sourceRelease;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        executor.execute(this::produce);
+    }
+
+    private void produce()
+    {
+        try {
+            while (!closed && source.hasNext()) {
+                final T element = source.next();
+                if (!offer(element == null ? NULL : element)) {
+                    return;
+                }
+            }
+            offer(END);
+        } catch (RuntimeException | Error e) {
+            offer(new Failed(e));
+        } finally {
+            producerDone.countDown();
+        }
+    }
+
+    private boolean offer(final Object element)
+    {
+        try {
+            while (!buffer.offer(element, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (next == null) {
+            try {
+                next = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (next instanceof Failed failed) {
+            throw failed.exception instanceof RuntimeException e
+                ? e
+                : new RuntimeException(failed.exception);
+        }
+        return next != END;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object element = next;
+        next = null;
+        return element == NULL ? null : (T) element;
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        closed = true;
+        buffer.clear();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                producerDone.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            sourceRelease.close();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Failed
+    {
+        private final Throwable exception;
+
+        private Failed(final Throwable exception)
+        {
+            this.exception = exception;
+        }
+    }
+}
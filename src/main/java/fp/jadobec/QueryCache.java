@@ -0,0 +1,319 @@
+package fp.jadobec;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Weight bounded LRU store of query results. Every result is indexed by the
+ * tables its query reads, so a write to a table removes the results that
+ * depend on it. The tables are read from the FROM lists and the JOIN
+ * clauses of the query, including the subqueries.
+ * <p>
+ * A result is only stored if none of its tables was written since its
+ * query was started; otherwise a query racing with a write could put back
+ * the result the write has just invalidated.
+ */
+final class QueryCache
+{
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+
+    private static final String NAME = "([\\w.\"`\\[\\]]+)";
+
+    private static final Pattern FROM_CLAUSE = Pattern.compile(
+        "\\bFROM\\s+([^()]+?)(?=\\b(?:WHERE|GROUP|ORDER|HAVING|LIMIT|OFFSET|FETCH"
+            + "|UNION|INTERSECT|EXCEPT|JOIN|INNER|LEFT|RIGHT|FULL|CROSS|NATURAL"
+            + "|ON|FOR)\\b|[()]|$)",
+        FLAGS
+    );
+
+    private static final Pattern JOIN = Pattern.compile(
+        "\\bJOIN\\s+" + NAME,
+        FLAGS
+    );
+
+    private static final Pattern WRITE = Pattern.compile(
+        "^\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|MERGE\\s+INTO|REPLACE\\s+INTO"
+            + "|TRUNCATE\\s+TABLE|(?:ALTER|DROP)\\s+TABLE(?:\\s+IF\\s+EXISTS)?)\\s+"
+            + NAME,
+        FLAGS
+    );
+
+    private static final Pattern CREATE = Pattern.compile("^\\s*CREATE\\b", FLAGS);
+
+    private static final Pattern LOCKING = Pattern.compile(
+        "\\bFOR\\s+(?:NO\\s+KEY\\s+)?(?:KEY\\s+)?(?:UPDATE|SHARE)\\b"
+            + "|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b",
+        FLAGS
+    );
+
+    private final CacheConfig config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<Key, Entry> entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Set<Key>> keysByTable = new HashMap<>();
+
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private long weight = 0;
+
+    QueryCache(final CacheConfig config)
+    {
+        this.config = config;
+    }
+
+    /**
+     * Returns the cached result of the key, or a miss with the stamp the
+     * loaded result has to be stored with.
+     */
+    Lookup lookup(final Key key)
+    {
+        final long now = System.nanoTime();
+        lock.lock();
+        try {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - now > 0) {
+                    hits.increment();
+                    return new Lookup(true, entry.value, entry.tables, 0);
+                }
+                remove(key, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        final Set<String> tables = readTables(key.sql());
+        return new Lookup(false, null, tables, stamp(tables));
+    }
+
+    void put(
+        final Key key,
+        final Lookup lookup,
+        final Object value,
+        final long ttlNanos
+    )
+    {
+        final long entryWeight = config.weigh(value);
+        if (entryWeight > config.maximumWeight()) {
+            return;
+        }
+
+        final Entry entry = new Entry(
+            value,
+            lookup.tables,
+            entryWeight,
+            System.nanoTime() + ttlNanos
+        );
+        lock.lock();
+        try {
+            if (stamp(lookup.tables) != lookup.stamp) {
+                return;
+            }
+            final Entry replaced = entries.put(key, entry);
+            if (replaced != null) {
+                weight -= replaced.weight;
+            }
+            weight += entryWeight;
+            for (String table : lookup.tables) {
+                keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalidates the results that read the tables the statement writes.
+     * Every result is invalidated if the table is not known.
+     */
+    void written(final String sql)
+    {
+        if (CREATE.matcher(sql).find()) {
+            return;
+        }
+        final Matcher matcher = WRITE.matcher(sql);
+        if (matcher.find()) {
+            invalidate(tableName(matcher.group(1)));
+        } else {
+            invalidateAll();
+        }
+    }
+
+    void invalidate(final String table)
+    {
+        generations.computeIfAbsent(table, t -> new AtomicLong())
+            .incrementAndGet();
+
+        lock.lock();
+        try {
+            final Set<Key> keys = keysByTable.remove(table);
+            if (keys != null) {
+                for (Key key : keys) {
+                    final Entry entry = entries.get(key);
+                    if (entry != null) {
+                        remove(key, entry);
+                        invalidations.increment();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidateAll()
+    {
+        generation.incrementAndGet();
+
+        lock.lock();
+        try {
+            invalidations.add(entries.size());
+            entries.clear();
+            keysByTable.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    CacheStats stats()
+    {
+        lock.lock();
+        try {
+            return new CacheStats(
+                hits.sum(),
+                misses.sum(),
+                evictions.sum(),
+                invalidations.sum(),
+                entries.size(),
+                weight
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long stamp(final Set<String> tables)
+    {
+        long stamp = generation.get();
+        for (String table : tables) {
+            final AtomicLong tableGeneration = generations.get(table);
+            if (tableGeneration != null) {
+                stamp += tableGeneration.get();
+            }
+        }
+        return stamp;
+    }
+
+    private void evict()
+    {
+        final Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > config.maximumWeight() && eldest.hasNext()) {
+            final Map.Entry<Key, Entry> entry = eldest.next();
+            eldest.remove();
+            unindex(entry.getKey(), entry.getValue());
+            evictions.increment();
+        }
+    }
+
+    private void remove(final Key key, final Entry entry)
+    {
+        entries.remove(key);
+        unindex(key, entry);
+    }
+
+    private void unindex(final Key key, final Entry entry)
+    {
+        weight -= entry.weight;
+        for (String table : entry.tables) {
+            final Set<Key> keys = keysByTable.get(table);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTable.remove(table);
+            }
+        }
+    }
+
+    static Set<String> readTables(final String sql)
+    {
+        final Set<String> tables = new HashSet<>();
+        final Matcher from = FROM_CLAUSE.matcher(sql);
+        while (from.find()) {
+            for (String item : from.group(1).split(",")) {
+                final String name = item.trim().split("\\s+")[0];
+                if (!name.isEmpty()) {
+                    tables.add(tableName(name));
+                }
+            }
+        }
+        final Matcher join = JOIN.matcher(sql);
+        while (join.find()) {
+            tables.add(tableName(join.group(1)));
+        }
+        return tables;
+    }
+
+    /**
+     * {@code FOR UPDATE}, {@code FOR SHARE} and their variants, which
+     * have to lock the rows in the database.
+     */
+    static boolean isLocking(final String sql)
+    {
+        return LOCKING.matcher(sql).find();
+    }
+
+    private static String tableName(final String name)
+    {
+        final String unquoted = name.replaceAll("[\"`\\[\\]]", "");
+        return unquoted
+            .substring(unquoted.lastIndexOf('.') + 1)
+            .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The extractor is part of the key, because the same query can be read
+     * into different objects. It is compared by identity.
+     */
+    record Key(String sql, List<Object> params, Extractor<?> extractor)
+    {
+    }
+
+    record Lookup(boolean hit, Object value, Set<String> tables, long stamp)
+    {
+    }
+
+    private record Entry(
+        Object value,
+        Set<String> tables,
+        long weight,
+        long expiresAt
+    )
+    {
+    }
+}
@@ -0,0 +1,251 @@
+package fp.jadobec;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Statement hints of a query. With {@code streaming} the query runs with
+ * auto-commit switched off, which drivers like PostgreSQL's need to fetch
+ * the rows in {@code fetchSize} sized chunks through a cursor instead of
+ * reading the whole result into memory. With {@code prefetch} the rows are
+ * read and extracted on a background thread, up to {@code prefetch} rows
+ * ahead of the stream consumer.
+ */
+public final class QueryOptions
+{
+    private static final QueryOptions DEFAULTS = new Builder().build();
+
+    private final int fetchSize;
+
+    private final int maxRows;
+
+    private final int fetchDirection;
+
+    private final int resultSetType;
+
+    private final int resultSetConcurrency;
+
+    private final boolean streaming;
+
+    private final int prefetch;
+
+    private final Duration queryTimeout;
+
+    private QueryOptions(final Builder builder)
+    {
+        this.fetchSize = builder.fetchSize;
+        this.maxRows = builder.maxRows;
+        this.fetchDirection = builder.fetchDirection;
+        this.resultSetType = builder.resultSetType;
+        this.resultSetConcurrency = builder.resultSetConcurrency;
+        this.streaming = builder.streaming;
+        this.prefetch = builder.prefetch;
+        this.queryTimeout = builder.queryTimeout;
+    }
+
+    public static QueryOptions defaults()
+    {
+        return DEFAULTS;
+    }
+
+    public static QueryOptions streaming(int fetchSize)
+    {
+        return build(builder -> builder
+            .fetchSize(fetchSize)
+            .streaming(true)
+        );
+    }
+
+    public static QueryOptions build(Consumer<Builder> factory)
+    {
+        final Builder builder = new Builder();
+        factory.accept(builder);
+        return builder.build();
+    }
+
+    public int fetchSize()
+    {
+        return fetchSize;
+    }
+
+    public int maxRows()
+    {
+        return maxRows;
+    }
+
+    public int fetchDirection()
+    {
+        return fetchDirection;
+    }
+
+    public int resultSetType()
+    {
+        return resultSetType;
+    }
+
+    public int resultSetConcurrency()
+    {
+        return resultSetConcurrency;
+    }
+
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
+    public int prefetch()
+    {
+        return prefetch;
+    }
+
+    public Duration queryTimeout()
+    {
+        return queryTimeout;
+    }
+
+    StatementCache.Key statementKey(final String sql)
+    {
+        return new StatementCache.Key(
+            sql,
+            Statement.NO_GENERATED_KEYS,
+            resultSetType,
+            resultSetConcurrency,
+            List.of()
+        );
+    }
+
+    /**
+     * Sets the hints of the query. The statement cache resets them when the
+     * statement is released, so the queries without options get a reused
+     * statement with the defaults.
+     */
+    void apply(final Statement statement) throws SQLException
+    {
+        statement.setFetchSize(fetchSize);
+        statement.setMaxRows(maxRows);
+        if (resultSetType != ResultSet.TYPE_FORWARD_ONLY) {
+            statement.setFetchDirection(fetchDirection);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueryOptions(fetchSize -> " + fetchSize
+            + ", maxRows -> " + maxRows
+            + ", fetchDirection -> " + fetchDirection
+            + ", resultSetType -> " + resultSetType
+            + ", resultSetConcurrency -> " + resultSetConcurrency
+            + ", streaming -> " + streaming
+            + ", prefetch -> " + prefetch
+            + ", queryTimeout -> " + queryTimeout + ")";
+    }
+
+    public static final class Builder
+    {
+        private int fetchSize = 0;
+
+        private int maxRows = 0;
+
+        private int fetchDirection = ResultSet.FETCH_FORWARD;
+
+        private int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+
+        private int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
+
+        private boolean streaming = false;
+
+        private int prefetch = 0;
+
+        private Duration queryTimeout = Duration.ZERO;
+
+        private Builder()
+        {
+        }
+
+        public Builder fetchSize(int fetchSize)
+        {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder maxRows(int maxRows)
+        {
+            this.maxRows = maxRows;
+            return this;
+        }
+
+        public Builder fetchDirection(int fetchDirection)
+        {
+            this.fetchDirection = fetchDirection;
+            return this;
+        }
+
+        public Builder resultSetType(int resultSetType)
+        {
+            this.resultSetType = resultSetType;
+            return this;
+        }
+
+        public Builder resultSetConcurrency(int resultSetConcurrency)
+        {
+            this.resultSetConcurrency = resultSetConcurrency;
+            return this;
+        }
+
+        public Builder streaming(boolean streaming)
+        {
+            this.streaming = streaming;
+            return this;
+        }
+
+        /**
+         * The size of the buffer the rows are read into ahead of the
+         * consumer. Zero, the default, reads the rows on the consumer's
+         * thread.
+         */
+        public Builder prefetch(int prefetch)
+        {
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * The query is cancelled by the driver after this duration, which
+         * is rounded up to whole seconds. {@link Duration#ZERO} uses the
+         * default timeout of the repository.
+         */
+        public Builder queryTimeout(Duration queryTimeout)
+        {
+            this.queryTimeout = queryTimeout;
+            return this;
+        }
+
+        private QueryOptions build()
+        {
+            if (queryTimeout.isNegative()) {
+                throw new IllegalArgumentException(
+                    "Negative query timeout: " + queryTimeout
+                );
+            }
+            if (fetchSize < 0 || maxRows < 0 || prefetch < 0) {
+                throw new IllegalArgumentException(
+                    "Wrong fetch size, max rows or prefetch: "
+                        + fetchSize + ", " + maxRows + ", " + prefetch
+                );
+            }
+            if (resultSetType == ResultSet.TYPE_FORWARD_ONLY
+                && fetchDirection != ResultSet.FETCH_FORWARD)
+            {
+                throw new IllegalArgumentException(
+                    "Forward only result set must be fetched forward"
+                );
+            }
+            return new QueryOptions(this);
+        }
+    }
+}
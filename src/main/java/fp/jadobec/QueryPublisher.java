@@ -0,0 +1,180 @@
+package fp.jadobec;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fp.util.ThrowingSupplier;
+
+/**
+ * Publishes the rows of a query. Every subscription runs the query on a
+ * connection of its own, opened at the first request. Rows are only read
+ * while the subscriber has demand; the statement and the connection are
+ * released when the rows run out, on failure and on cancel.
+ * <p>
+ * The signals of a subscription are sent from the executor, one task at
+ * a time.
+ */
+final class QueryPublisher<T> implements Flow.Publisher<T>
+{
+    private final ThrowingSupplier<Iterator<T>, Exception> open;
+
+    private final Executor executor;
+
+    QueryPublisher(
+        final ThrowingSupplier<Iterator<T>, Exception> open,
+        final Executor executor
+    )
+    {
+        this.open = open;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super T> subscriber)
+    {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new QuerySubscription(subscriber));
+    }
+
+    private final class QuerySubscription implements Flow.Subscription, Runnable
+    {
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger work = new AtomicInteger();
+
+        private volatile boolean cancelled = false;
+
+        private volatile Throwable invalidRequest = null;
+
+        private Iterator<T> rows = null;
+
+        private boolean done = false;
+
+        private QuerySubscription(final Flow.Subscriber<? super T> subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n)
+        {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException(
+                    "Non-positive request: " + n
+                );
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> {
+                    final long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    finish(e);
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain()
+        {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish(null);
+                return;
+            }
+            if (invalidRequest != null) {
+                finish(invalidRequest);
+                return;
+            }
+
+            try {
+                if (rows == null) {
+                    rows = open.get();
+                }
+                while (demand.get() > 0 && !cancelled) {
+                    if (!rows.hasNext()) {
+                        finish(null);
+                        return;
+                    }
+                    final T row = Objects.requireNonNull(
+                        rows.next(),
+                        "Extractor returned null"
+                    );
+                    demand.decrementAndGet();
+                    subscriber.onNext(row);
+                }
+                if (cancelled) {
+                    finish(null);
+                }
+            } catch (Throwable e) {
+                finish(e);
+            }
+        }
+
+        /**
+         * Releases the rows, then signals completion or the failure to the
+         * subscriber, unless it has cancelled.
+         */
+        private void finish(final Throwable failure)
+        {
+            if (done) {
+                return;
+            }
+            done = true;
+
+            Throwable error = failure;
+            if (rows != null) {
+                try {
+                    ((AutoCloseable) rows).close();
+                } catch (Exception e) {
+                    if (error == null) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                }
+                rows = null;
+            }
+
+            if (!cancelled) {
+                if (error == null) {
+                    subscriber.onComplete();
+                } else {
+                    subscriber.onError(error);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import fp.util.ThrowingFunction;
+
+/**
+ * The rows of a list of key ranges, read by {@code readers} tasks on the
+ * executor at once. A reader takes the next range not read yet until
+ * there is none, and passes the rows through a bounded queue of its own,
+ * so it waits while the consumer of the queue is behind.
+ * <p>
+ * The {@link #spliterator()} splits by the queues of the readers, so a
+ * parallel stream consumes every queue on a thread of its own; an unsplit
+ * one takes the rows of its queues as they come. The rows of a range keep
+ * their order, the rows of different ranges are interleaved.
+ * <p>
+ * The first failure of a reader stops the others and is thrown by the
+ * consumers. {@link #close()} stops the readers, e.g. of a stream not read
+ * to its end, and waits until they have closed their rows.
+ */
+final class RangeReader<T> implements AutoCloseable
+{
+    private static final Object NULL = new Object();
+
+    private static final Object END = new Object();
+
+    private static final long OFFER_MILLIS = 10;
+
+    private static final long POLL_MILLIS = 10;
+
+    private static final long CLOSE_SECONDS = 30;
+
+    private final List<KeyRange> ranges;
+
+    private final ThrowingFunction<KeyRange, Iterator<T>, Exception> open;
+
+    private final List<BlockingQueue<Object>> queues = new ArrayList<>();
+
+    private final boolean[] ended;
+
+    private final AtomicInteger nextRange = new AtomicInteger();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final CountDownLatch finished;
+
+    private volatile boolean stopped = false;
+
+    RangeReader(
+        final List<KeyRange> ranges,
+        final ThrowingFunction<KeyRange, Iterator<T>, Exception> open,
+        final int readers,
+        final int capacity,
+        final Executor executor
+    )
+    {
+        this.ranges = ranges;
+        this.open = open;
+        final int count = Math.max(1, Math.min(readers, ranges.size()));
+        this.ended = new boolean[count];
+        this.finished = new CountDownLatch(count);
+        for (int reader = 0; reader < count; reader++) {
+            queues.add(new ArrayBlockingQueue<>(Math.max(1, capacity / count)));
+        }
+        for (BlockingQueue<Object> queue : queues) {
+            try {
+                executor.execute(() -> read(queue));
+            } catch (RuntimeException e) {
+                failed(e);
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * The rows of all the readers. It is split by whole reader queues, so
+     * it can be split until every part has one queue.
+     */
+    Spliterator<T> spliterator()
+    {
+        return new Part(0, queues.size());
+    }
+
+    /**
+     * Stops the readers and waits, at most {@value #CLOSE_SECONDS} seconds,
+     * until they have closed their rows and given back their connections.
+     */
+    @Override
+    public void close()
+    {
+        stopped = true;
+        try {
+            finished.await(CLOSE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queues.forEach(BlockingQueue::clear);
+    }
+
+    private void read(final BlockingQueue<Object> queue)
+    {
+        try {
+            int index;
+            while (!stopped && (index = nextRange.getAndIncrement()) < ranges.size()) {
+                readRange(queue, ranges.get(index));
+            }
+            offer(queue, END);
+        } catch (Throwable e) {
+            failed(e);
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private void readRange(
+        final BlockingQueue<Object> queue,
+        final KeyRange range
+    ) throws Exception
+    {
+        final Iterator<T> rows = open.apply(range);
+        try {
+            while (!stopped && rows.hasNext()) {
+                final T row = rows.next();
+                offer(queue, row == null ? NULL : row);
+            }
+        } finally {
+            ((AutoCloseable) rows).close();
+        }
+    }
+
+    private void offer(final BlockingQueue<Object> queue, final Object item)
+        throws InterruptedException
+    {
+        boolean offered = false;
+        while (!offered && !stopped) {
+            offered = queue.offer(item, OFFER_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void failed(final Throwable e)
+    {
+        failure.compareAndSet(null, e);
+        stopped = true;
+    }
+
+    /**
+     * The rows of the queues from {@code from} to {@code to}. A queue is
+     * consumed by one part at a time.
+     */
+    private final class Part implements Spliterator<T>
+    {
+        private int from;
+
+        private final int to;
+
+        private Part(final int from, final int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(final Consumer<? super T> action)
+        {
+            while (true) {
+                int waiting = -1;
+                for (int queue = from; queue < to; queue++) {
+                    if (ended[queue]) {
+                        continue;
+                    }
+                    final Object item = queues.get(queue).poll();
+                    if (item == END) {
+                        ended[queue] = true;
+                    } else if (item != null) {
+                        action.accept(item == NULL ? null : (T) item);
+                        return true;
+                    } else if (waiting < 0) {
+                        waiting = queue;
+                    }
+                }
+                if (waiting < 0) {
+                    return false;
+                }
+                if (stopped) {
+                    return stop();
+                }
+
+                final Object item;
+                try {
+                    item = queues.get(waiting).poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                if (item == END) {
+                    ended[waiting] = true;
+                } else if (item != null) {
+                    action.accept(item == NULL ? null : (T) item);
+                    return true;
+                }
+            }
+        }
+
+        private boolean stop()
+        {
+            final Throwable exception = failure.get();
+            if (exception == null) {
+                return false;
+            }
+            throw exception instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new RuntimeException(exception);
+        }
+
+        @Override
+        public Spliterator<T> trySplit()
+        {
+            if (to - from < 2) {
+                return null;
+            }
+            final int middle = (from + to) >>> 1;
+            final Part prefix = new Part(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return 0;
+        }
+    }
+}
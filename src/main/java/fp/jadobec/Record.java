@@ -1,12 +1,16 @@
 package fp.jadobec;
 
-import java.lang.reflect.Constructor;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -21,44 +25,51 @@ import fp.util.ThrowingConsumer;
 
 public class Record
 {
-    private final Map<String, Object> values;
+    private static final ThreadLocal<SchemaSlot> lastSchema = new ThreadLocal<>();
 
-    private Record(Map<String, Object> values)
+    private final Schema schema;
+
+    private final Object[] values;
+
+    private Record(Schema schema, Object[] values)
     {
+        this.schema = schema;
         this.values = values;
     }
 
     @SuppressWarnings("unchecked")
     public <T> T fieldOrElse(String name, T elseValue)
     {
-        return Optional.ofNullable((T) values.get(name))
-            .orElse(elseValue);
+        final int index = schema.indexOf(name);
+        return index < 0 || values[index] == null
+            ? elseValue
+            : (T) values[index];
     }
 
     public Optional<Object> field(String name)
     {
-        return Optional.ofNullable(values.get(name));
+        final int index = schema.indexOf(name);
+        return index < 0 ? Optional.empty() : Optional.ofNullable(values[index]);
     }
 
     public Set<String> fields()
     {
-        return values.keySet();
+        return schema.fields();
     }
 
     public Collection<Object> values()
     {
-        return values.values();
+        return Collections.unmodifiableList(Arrays.asList(values));
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * The fields are passed to the constructor by name if they match its
+     * parameters (see {@link RecordMapper}), otherwise in their order.
+     */
     public <T> Either<Failure, T> as(Class<T> type)
     {
         try {
-            Constructor<?>[] constructors = type.getDeclaredConstructors();
-            Constructor<?> ctRet = constructors[0];
-            ctRet.setAccessible(true);
-            Object[] arglist = values.values().toArray();
-            return Right.of((T) ctRet.newInstance(arglist));
+            return Right.of(RecordMapper.of(type).map(schema, values));
         } catch (Exception e) {
             return Left.of(
                 ExceptionFailure.of(e)
@@ -78,7 +89,7 @@ public class Record
 
     public Record copy(Consumer<Builder> factory)
     {
-        final Builder builder = new Builder(values);
+        final Builder builder = new Builder(this);
         factory.accept(builder);
         return builder.build();
     }
@@ -119,29 +130,51 @@ public class Record
     public static Either<Failure, Record> of(ResultSet rs)
     {
         return ExceptionFailure.tryCatch(() -> {
-            final Map<String, Object> values = new LinkedHashMap<>();
-            final ResultSetMetaData rsmd = rs.getMetaData();
-            final int numberOfColumns = rsmd.getColumnCount();
-
-            for (int i = 1; i <= numberOfColumns; i++) {
-                values.put(
-                    rsmd.getColumnLabel(i).toLowerCase(),
-                    rs.getObject(i)
-                );
+            final Schema schema = schemaOf(rs);
+            final int[] slots = schema.slots;
+            final Object[] values = new Object[schema.size()];
+
+            for (int i = 0; i < slots.length; i++) {
+                values[slots[i]] = rs.getObject(i + 1);
             }
 
-            return new Record(values);
+            return new Record(schema, values);
         });
     }
 
+    /**
+     * The schema of the last result set is kept per thread, so the rows of
+     * a query share one schema and the metadata is read only once.
+     */
+    private static Schema schemaOf(ResultSet rs) throws SQLException
+    {
+        final SchemaSlot slot = lastSchema.get();
+        if (slot != null && slot.resultSet().get() == rs) {
+            return slot.schema();
+        }
+
+        final ResultSetMetaData rsmd = rs.getMetaData();
+        final int numberOfColumns = rsmd.getColumnCount();
+        final String[] labels = new String[numberOfColumns];
+        for (int i = 1; i <= numberOfColumns; i++) {
+            labels[i - 1] = rsmd.getColumnLabel(i).toLowerCase();
+        }
+
+        final Schema schema = Schema.of(labels);
+        lastSchema.set(new SchemaSlot(new WeakReference<>(rs), schema));
+        return schema;
+    }
+
     @Override
     public String toString()
     {
-        final String fieldStr = values.entrySet()
-            .stream()
-            .map(entry -> entry.getKey() + " -> " + entry.getValue())
-            .reduce((s1, s2) -> s1 + ", " + s2)
-            .orElse("");
+        final StringBuilder fieldStr = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                fieldStr.append(", ");
+            }
+            fieldStr.append(schema.names[i]).append(" -> ").append(values[i]);
+        }
 
         return "Record(" + fieldStr + ")";
     }
@@ -150,10 +183,14 @@ public class Record
     public boolean equals(Object other)
     {
         if (other instanceof Record record) {
-            if (record.values.size() == values.size()) {
-                for (String key : values.keySet()) {
-                    if (!record.values.containsKey(key)
-                        || !record.values.get(key).equals(values.get(key)))
+            if (record.schema == schema) {
+                return Arrays.equals(record.values, values);
+            }
+            if (record.values.length == values.length) {
+                for (int i = 0; i < values.length; i++) {
+                    final int index = record.schema.indexOf(schema.names[i]);
+                    if (index < 0
+                        || !Objects.equals(record.values[index], values[i]))
                     {
                         return false;
                     }
@@ -164,18 +201,102 @@ public class Record
         return false;
     }
 
+    /**
+     * Independent of the field order, like {@link #equals(Object)}.
+     */
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        for (int i = 0; i < values.length; i++) {
+            hash += schema.names[i].hashCode() ^ Objects.hashCode(values[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Immutable field names of records, shared by the rows of a query.
+     */
+    static final class Schema
+    {
+        private final String[] names;
+
+        private final Map<String, Integer> indexes;
+
+        private final int[] slots;
+
+        private final Set<String> fields;
+
+        private Schema(
+            String[] names,
+            Map<String, Integer> indexes,
+            int[] slots
+        )
+        {
+            this.names = names;
+            this.indexes = indexes;
+            this.slots = slots;
+            this.fields = Collections.unmodifiableSet(indexes.keySet());
+        }
+
+        /**
+         * A repeated label gets one field, the value of its last column.
+         */
+        static Schema of(String[] labels)
+        {
+            final Map<String, Integer> indexes = new LinkedHashMap<>();
+            final int[] slots = new int[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                final Integer index = indexes.putIfAbsent(labels[i], indexes.size());
+                slots[i] = index == null ? indexes.size() - 1 : index;
+            }
+            return new Schema(
+                indexes.keySet().toArray(new String[0]),
+                indexes,
+                slots
+            );
+        }
+
+        int indexOf(String name)
+        {
+            final Integer index = indexes.get(name);
+            return index == null ? -1 : index;
+        }
+
+        int size()
+        {
+            return names.length;
+        }
+
+        Set<String> fields()
+        {
+            return fields;
+        }
+    }
+
+    private record SchemaSlot(WeakReference<ResultSet> resultSet, Schema schema)
+    {
+    }
+
     public static final class Builder
     {
         private final Map<String, Object> values;
 
+        private final Schema schema;
+
         private Builder()
         {
             this.values = new LinkedHashMap<>();
+            this.schema = null;
         }
 
-        private Builder(Map<String, Object> values)
+        private Builder(Record record)
         {
-            this.values = values;
+            this.values = new LinkedHashMap<>();
+            for (int i = 0; i < record.values.length; i++) {
+                values.put(record.schema.names[i], record.values[i]);
+            }
+            this.schema = record.schema;
         }
 
         public Builder field(String name, Object value)
@@ -201,7 +322,10 @@ public class Record
 
         private Record build()
         {
-            return new Record(values);
+            final Schema recordSchema = schema != null && schema.size() == values.size()
+                ? schema
+                : Schema.of(values.keySet().toArray(new String[0]));
+            return new Record(recordSchema, values.values().toArray());
         }
     }
 }
@@ -0,0 +1,219 @@
+package fp.jadobec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+
+/**
+ * Creates objects of a class from records. The constructor is looked up
+ * once per class and invoked through a method handle. Java records use
+ * their canonical constructor; other classes use the constructor whose
+ * parameters match the declared fields. The fields of the record are
+ * matched by name; if they do not match, they are passed in the record's
+ * field order.
+ */
+final class RecordMapper<T>
+{
+    private static final ClassValue<RecordMapper<?>> mappers =
+        new ClassValue<>() {
+            @Override
+            protected RecordMapper<?> computeValue(Class<?> type)
+            {
+                return create(type);
+            }
+        };
+
+    private final MethodHandle constructor;
+
+    private final String[] parameterNames;
+
+    private volatile Binding binding;
+
+    private RecordMapper(
+        final MethodHandle constructor,
+        final String[] parameterNames
+    )
+    {
+        this.constructor = constructor;
+        this.parameterNames = parameterNames;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RecordMapper<T> of(final Class<T> type)
+    {
+        return (RecordMapper<T>) mappers.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    T map(final Record.Schema schema, final Object[] values) throws Exception
+    {
+        final int[] indexes = bind(schema).indexes;
+        final Object[] args;
+        if (indexes == null) {
+            args = values.clone();
+        } else {
+            args = new Object[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                args[i] = values[indexes[i]];
+            }
+        }
+
+        try {
+            return (T) constructor.invokeExact(args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Binding bind(final Record.Schema schema)
+    {
+        final Binding last = binding;
+        if (last != null && last.schema == schema) {
+            return last;
+        }
+
+        final Binding bound = new Binding(schema, indexesOf(schema));
+        binding = bound;
+        return bound;
+    }
+
+    private int[] indexesOf(final Record.Schema schema)
+    {
+        if (parameterNames == null) {
+            return null;
+        }
+
+        final int[] indexes = new int[parameterNames.length];
+        for (int i = 0; i < parameterNames.length; i++) {
+            int index = schema.indexOf(parameterNames[i]);
+            if (index < 0) {
+                index = schema.indexOf(parameterNames[i].toLowerCase());
+            }
+            if (index < 0) {
+                return null;
+            }
+            indexes[i] = index;
+        }
+        return indexes;
+    }
+
+    private static RecordMapper<?> create(final Class<?> type)
+    {
+        try {
+            final Constructor<?> constructor;
+            final String[] parameterNames;
+
+            if (type.isRecord()) {
+                final RecordComponent[] components = type.getRecordComponents();
+                constructor = type.getDeclaredConstructor(
+                    Arrays.stream(components)
+                        .map(RecordComponent::getType)
+                        .toArray(Class<?>[]::new)
+                );
+                parameterNames = Arrays.stream(components)
+                    .map(RecordComponent::getName)
+                    .toArray(String[]::new);
+            } else {
+                final Constructor<?> fieldConstructor = findFieldConstructor(type);
+                if (fieldConstructor != null) {
+                    constructor = fieldConstructor;
+                    parameterNames = parameterNames(constructor, type);
+                } else {
+                    constructor = type.getDeclaredConstructors()[0];
+                    parameterNames = parameterNames(constructor, null);
+                }
+            }
+
+            constructor.setAccessible(true);
+            final int parameterCount = constructor.getParameterCount();
+            final MethodHandle handle = MethodHandles.lookup()
+                .unreflectConstructor(constructor)
+                .asSpreader(Object[].class, parameterCount)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+
+            return new RecordMapper<>(handle, parameterNames);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new RecordMapper<>(failing(type, e), null);
+        }
+    }
+
+    private static Constructor<?> findFieldConstructor(final Class<?> type)
+    {
+        final Class<?>[] fieldTypes = Arrays.stream(instanceFields(type))
+            .map(Field::getType)
+            .toArray(Class<?>[]::new);
+
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (Arrays.equals(constructor.getParameterTypes(), fieldTypes)) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private static String[] parameterNames(
+        final Constructor<?> constructor,
+        final Class<?> fieldType
+    )
+    {
+        final Parameter[] parameters = constructor.getParameters();
+        if (parameters.length > 0 && parameters[0].isNamePresent()) {
+            return Arrays.stream(parameters)
+                .map(Parameter::getName)
+                .toArray(String[]::new);
+        }
+        if (fieldType != null) {
+            return Arrays.stream(instanceFields(fieldType))
+                .map(Field::getName)
+                .toArray(String[]::new);
+        }
+        return null;
+    }
+
+    private static Field[] instanceFields(final Class<?> type)
+    {
+        return Arrays.stream(type.getDeclaredFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+            .filter(field -> !field.isSynthetic())
+            .toArray(Field[]::new);
+    }
+
+    /**
+     * A mapper of a class without usable constructor fails on every call,
+     * like the reflective constructor call did.
+     */
+    private static MethodHandle failing(final Class<?> type, final Exception e)
+    {
+        final IllegalArgumentException failure = new IllegalArgumentException(
+            "No usable constructor in " + type.getName(),
+            e
+        );
+        return MethodHandles.dropArguments(
+            MethodHandles.throwException(Object.class, IllegalArgumentException.class)
+                .bindTo(failure),
+            0,
+            Object[].class
+        );
+    }
+
+    private static final class Binding
+    {
+        private final Record.Schema schema;
+
+        private final int[] indexes;
+
+        private Binding(final Record.Schema schema, final int[] indexes)
+        {
+            this.schema = schema;
+            this.indexes = indexes;
+        }
+    }
+}
@@ -6,12 +6,26 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.Stream.Builder;
 import java.util.stream.StreamSupport;
@@ -27,6 +41,7 @@ import fp.util.GeneralFailure;
 import fp.util.Left;
 import fp.util.Right;
 import fp.util.ThrowingConsumer;
+import fp.util.ThrowingFunction;
 import fp.util.ThrowingSupplier;
 import fp.util.Tuple2;
 
@@ -66,6 +81,50 @@ public class Repository
             Function<Stream<T>, IO<Failure, R>> fn
         );
 
+        <R, T> IO<Failure, R> query(
+            String sql,
+            QueryOptions options,
+            Extractor<T> createObject,
+            Function<Stream<T>, IO<Failure, R>> fn,
+            Object... params
+        );
+
+        <R, T> IO<Failure, R> queryPrepared(
+            String sql,
+            QueryOptions options,
+            ThrowingConsumer<PreparedStatement, SQLException> prepare,
+            Extractor<T> createObject,
+            Function<Stream<T>, IO<Failure, R>> fn
+        );
+
+        <T> IO<Failure, Flow.Publisher<T>> queryPublisher(
+            String sql,
+            ThrowingConsumer<PreparedStatement, SQLException> prepare,
+            Extractor<T> createObject
+        );
+
+        <R, T> IO<Failure, R> parallelScan(
+            String sql,
+            String keyColumn,
+            List<KeyRange> ranges,
+            Extractor<T> createObject,
+            Function<Stream<T>, IO<Failure, R>> fn
+        );
+
+        <R, T, K> IO<Failure, R> streamByKeyset(
+            String sql,
+            K initialKey,
+            Function<T, K> keyOf,
+            Extractor<T> createObject,
+            int pageSize,
+            Function<Stream<T>, IO<Failure, R>> fn
+        );
+
+        IO<Failure, ColumnarResult> queryColumnar(
+            String sql,
+            Object... params
+        );
+
         IO<Failure, Integer> update(
             final String sql,
             Object... params
@@ -76,12 +135,57 @@ public class Repository
             final ThrowingConsumer<PreparedStatement, SQLException> prepare
         );
 
+        IO<Failure, Long> execute(
+            String sql,
+            Object... params
+        );
+
+        IO<Failure, Long> executePrepared(
+            String sql,
+            ThrowingConsumer<PreparedStatement, SQLException> prepare
+        );
+
+        IO<Failure, Long> insertReturningKey(
+            String sql,
+            Object... params
+        );
+
+        <T> IO<Failure, List<Record>> insertReturningKeys(
+            String sql,
+            List<String> keyColumns,
+            Iterable<T> rows,
+            Binder<T> binder
+        );
+
+        IO<Failure, Long> bulkInsert(
+            String table,
+            Stream<Record> records
+        );
+
         IO<Failure, Integer> batchUpdate(String... sqls);
 
+        <T> IO<Failure, int[]> batchUpdatePrepared(
+            String sql,
+            Iterable<T> rows,
+            Binder<T> binder,
+            int chunkSize
+        );
+
+        IO<Failure, StatementCacheStats> statementCacheStats();
+
+        IO<Failure, RetryStats> retryStats();
+
+        IO<Failure, PoolStats> poolStats();
+
         <T> IO<Failure, T> transaction(
             IO<Failure, T> dbCommand
         );
 
+        <T> IO<Failure, T> withTimeout(
+            Duration timeout,
+            IO<Failure, T> dbCommand
+        );
+
         <T> IO<Failure, Stream<T>> mapToStream(
             Stream<T> stream
         );
@@ -98,15 +202,169 @@ public class Repository
             IO<F, Stream<Either<F, U>>> io,
             Function<U, IO<F, R>> mapper
         );
+
+        <R, U> IO<Failure, Stream<Either<Failure, R>>> mapStreamEitherPar(
+            IO<Failure, Stream<Either<Failure, U>>> io,
+            Function<U, IO<Failure, R>> mapper,
+            int parallelism,
+            Class<?>... passed
+        );
     }
 
-    public static class Live implements Service
+    public static class Live implements Service, AutoCloseable
     {
+        private static final int SCAN_BUFFER_ROWS = 1024;
+
         private final ThrowingSupplier<Connection, SQLException> connectionFactory;
 
+        private final ThrowingConsumer<Connection, SQLException> connectionRelease;
+
+        private final ConnectionPool pool;
+
+        private final Map<Connection, ConnectionState> connectionStates;
+
+        private final StatementCache.Counters statementCounters;
+
+        private final RetryPolicy.Counters retryCounters;
+
+        private final ParameterTypes parameterTypes;
+
+        private final ParallelRunner parallelRunner;
+
+        private final StatementWatchdog watchdog;
+
+        private final Settings settings;
+
         private Live(final DataSource dataSource)
         {
             this.connectionFactory = dataSource::getConnection;
+            this.connectionRelease = Connection::close;
+            this.pool = null;
+            this.connectionStates = new ConcurrentHashMap<>();
+            this.statementCounters = new StatementCache.Counters();
+            this.retryCounters = new RetryPolicy.Counters();
+            this.parameterTypes = new ParameterTypes();
+            this.parallelRunner = ParallelRunner.create();
+            this.watchdog = new StatementWatchdog(connectionStates.values());
+            this.settings = Settings.DEFAULT;
+        }
+
+        private Live(
+            final ConnectionPool pool,
+            final Map<Connection, ConnectionState> connectionStates
+        )
+        {
+            this.connectionFactory = pool::acquire;
+            this.connectionRelease = pool::release;
+            this.pool = pool;
+            this.connectionStates = connectionStates;
+            this.statementCounters = new StatementCache.Counters();
+            this.retryCounters = new RetryPolicy.Counters();
+            this.parameterTypes = new ParameterTypes();
+            this.parallelRunner = ParallelRunner.create();
+            this.watchdog = new StatementWatchdog(connectionStates.values());
+            this.settings = Settings.DEFAULT;
+        }
+
+        private Live(final Live live, final Settings settings)
+        {
+            this(live, settings, live.parallelRunner);
+        }
+
+        private Live(
+            final Live live,
+            final Settings settings,
+            final ParallelRunner parallelRunner
+        )
+        {
+            this.connectionFactory = live.connectionFactory;
+            this.connectionRelease = live.connectionRelease;
+            this.pool = live.pool;
+            this.connectionStates = live.connectionStates;
+            this.statementCounters = live.statementCounters;
+            this.retryCounters = live.retryCounters;
+            this.parameterTypes = live.parameterTypes;
+            this.parallelRunner = parallelRunner;
+            this.watchdog = live.watchdog;
+            this.settings = settings;
+        }
+
+        /**
+         * Caches up to {@code size} prepared statements per connection.
+         * With a pool the statements survive between {@code use} calls,
+         * without it they are closed with the connection. Zero disables
+         * the cache, which is the default.
+         */
+        public Live withStatementCacheSize(final int size)
+        {
+            return new Live(this, settings.withStatementCacheSize(size));
+        }
+
+        /**
+         * The default timeout of the statements, used when the query
+         * options do not give one. {@link Duration#ZERO}, the default,
+         * means no timeout.
+         * <p>
+         * A statement still running at its timeout is cancelled by a
+         * watchdog thread, so is a statement whose thread is interrupted.
+         */
+        public Live withQueryTimeout(final Duration timeout)
+        {
+            return new Live(this, settings.withQueryTimeout(timeout));
+        }
+
+        /**
+         * Runs a failed {@code transaction} again as the policy says, e.g.
+         * after a serialization failure. The command of the transaction
+         * is run again from its start, so it should have no effects other
+         * than on the database. Only outermost transactions are retried.
+         * {@link RetryPolicy#NONE}, the default, never retries.
+         */
+        public Live withRetryPolicy(final RetryPolicy retryPolicy)
+        {
+            return new Live(this, settings.withRetryPolicy(retryPolicy));
+        }
+
+        /**
+         * Runs the JDBC calls on the executor: the statements, the
+         * commits and rollbacks and the waits for a pooled connection, as
+         * well as the work of the repository's own threads, the mappers of
+         * {@code mapStreamEitherPar}, the prefetching of rows and the query
+         * publishers. The fiber of a call waits for it on jazio's blocking
+         * pool. The rows of a streaming query are read by the thread that
+         * consumes the stream. The executor is not shut down by
+         * {@link #close()}.
+         */
+        public Live withExecutor(final Executor executor)
+        {
+            return new Live(this, settings, parallelRunner.onExecutor(executor));
+        }
+
+        /**
+         * Runs the JDBC calls and the work of the repository's own threads
+         * on virtual threads, as {@link #withExecutor} does on an executor.
+         * A task of the repository's own threads waiting for a pooled
+         * connection or for the database does not hold a platform thread;
+         * a fiber waiting for a call still holds one of jazio's blocking
+         * pool.
+         * <p>
+         * Virtual threads need Java 21; on older versions this throws
+         * {@code UnsupportedOperationException}.
+         */
+        public Live withVirtualThreads()
+        {
+            return new Live(this, settings, parallelRunner.onVirtualThreads());
+        }
+
+        /**
+         * Runs the mapper IOs of {@code mapStreamEitherPar} on the runtime,
+         * e.g. the application's own, instead of on a platform started by
+         * the repository. Its context is the base environment of the
+         * mappers. The runtime is not shut down by {@link #close()}.
+         */
+        public Live withRuntime(final fp.io.Runtime runtime)
+        {
+            return new Live(this, settings, parallelRunner.withRuntime(runtime));
         }
 
         @Override
@@ -114,13 +372,176 @@ public class Repository
             final IO<Failure, T> command
         )
         {
+            final IO<Failure, Connection> acquire = pool == null
+                ? IO.effect(this::acquire)
+                : runBlocking(this::acquire, this::releaseQuietly);
+
             return IO.bracket(
-                IO.effect(connectionFactory::get),
-                connection -> IO.effect(connection::close),
+                acquire,
+                connection -> IO.effect(() -> release(connection)),
                 connection -> command.provide(Connection.class, connection)
             );
         }
 
+        private Connection acquire() throws SQLException
+        {
+            final Connection connection = connectionFactory.get();
+            connectionStates.computeIfAbsent(connection, c ->
+                new ConnectionState(
+                    settings.statementCacheSize > 0
+                        ? new StatementCache(
+                            settings.statementCacheSize,
+                            statementCounters
+                        )
+                        : null
+                )
+            );
+            return connection;
+        }
+
+        private void release(final Connection connection) throws SQLException
+        {
+            final ConnectionState state = connectionStates.get(connection);
+            if (state != null) {
+                state.cancelRunning();
+            }
+            if (pool == null) {
+                closeState(connectionStates, connection);
+            }
+            connectionRelease.accept(connection);
+        }
+
+        private void releaseQuietly(final Connection connection)
+        {
+            try {
+                release(connection);
+            } catch (SQLException ignored) {
+            }
+        }
+
+        /**
+         * Runs a JDBC call: on the executor or the virtual threads of
+         * {@link #withExecutor} or {@link #withVirtualThreads}, waiting for
+         * it on jazio's blocking pool, or on that pool itself without them.
+         */
+        private <T> IO<Failure, T> runBlocking(final Callable<T> work)
+        {
+            return runBlocking(work, value -> {});
+        }
+
+        private <T> IO<Failure, T> runBlocking(
+            final Callable<T> work,
+            final Consumer<T> abandon
+        )
+        {
+            final IO<Failure, T> call = IO.effect(() ->
+                parallelRunner.call(work, abandon)
+            );
+            return call.blocking();
+        }
+
+        private <T> IO<Failure, T> withConnection(
+            final Function<Connection, Either<Failure, T>> work
+        )
+        {
+            return IO.accessM(Connection.class, connection ->
+                IO.absolve(runBlocking(() -> work.apply(connection)))
+            );
+        }
+
+        private static void closeState(
+            final Map<Connection, ConnectionState> connectionStates,
+            final Connection connection
+        )
+        {
+            final ConnectionState state = connectionStates.remove(connection);
+            if (state != null) {
+                state.close();
+            }
+        }
+
+        private PreparedStatement prepare(
+            final Connection connection,
+            final StatementCache.Key key
+        ) throws SQLException
+        {
+            final ConnectionState state = connectionStates.get(connection);
+            return state == null
+                ? key.prepare(connection)
+                : state.prepare(connection, key);
+        }
+
+        private void release(
+            final Connection connection,
+            final StatementCache.Key key,
+            final PreparedStatement statement
+        ) throws SQLException
+        {
+            final ConnectionState state = connectionStates.get(connection);
+            if (state == null) {
+                statement.close();
+            } else {
+                state.release(key, statement);
+            }
+        }
+
+        /**
+         * Sets the timeout of the statement from the query timeout and the
+         * deadline of the connection, and registers it as running. The
+         * watchdog cancels it when the timeout passes or its thread is
+         * interrupted, the release of the connection when it is still
+         * running then.
+         */
+        private void started(
+            final Connection connection,
+            final Statement statement,
+            final Duration queryTimeout
+        ) throws SQLException
+        {
+            long timeoutNanos = queryTimeout.isZero()
+                ? settings.queryTimeout.toNanos()
+                : queryTimeout.toNanos();
+
+            final ConnectionState state = connectionStates.get(connection);
+            if (state != null) {
+                final long deadline = state.deadline();
+                if (deadline != ConnectionState.NO_DEADLINE) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLTimeoutException("Deadline exceeded");
+                    }
+                    if (timeoutNanos == 0 || remaining < timeoutNanos) {
+                        timeoutNanos = remaining;
+                    }
+                }
+                state.started(
+                    statement,
+                    timeoutNanos == 0
+                        ? ConnectionState.NO_DEADLINE
+                        : System.nanoTime() + timeoutNanos
+                );
+                watchdog.start();
+            }
+
+            statement.setQueryTimeout(
+                (int) Math.min(
+                    (timeoutNanos + 999_999_999L) / 1_000_000_000L,
+                    Integer.MAX_VALUE
+                )
+            );
+        }
+
+        private void finished(
+            final Connection connection,
+            final Statement statement
+        )
+        {
+            final ConnectionState state = connectionStates.get(connection);
+            if (state != null) {
+                state.finished(statement);
+            }
+        }
+
 //        @Override
 //        public <T> IO<Failure, T> use(
 //            final String name,
@@ -150,6 +571,17 @@ public class Repository
             );
         }
 
+        public static Either<Failure, Live> create(
+            DataSource dataSource,
+            String testSql,
+            PoolConfig poolConfig
+        )
+        {
+            return ExceptionFailure.tryCatch(() ->
+                createPooled(dataSource, testSql, poolConfig)
+            );
+        }
+
         @SafeVarargs
         public static Either<Failure, Live> create(
             String driver,
@@ -161,16 +593,7 @@ public class Repository
             Statement stmt = null;
 
             try {
-                final Class<?> type = Class.forName(driver);
-                final Constructor<?> constructor = type.getDeclaredConstructor();
-                final DataSource dataSource = (DataSource) constructor.newInstance();
-                for (final Tuple2<String, String> property : properties) {
-                    final Method method = type.getMethod(
-                        "set" + property._1(),
-                        String.class
-                    );
-                    method.invoke(dataSource, property._2());
-                }
+                final DataSource dataSource = createDataSource(driver, properties);
 
                 conn = dataSource.getConnection();
                 stmt = conn.createStatement();
@@ -192,17 +615,90 @@ public class Repository
             }
         }
 
+        @SafeVarargs
+        public static Either<Failure, Live> create(
+            String driver,
+            String testSql,
+            PoolConfig poolConfig,
+            Tuple2<String, String>... properties
+        )
+        {
+            return ExceptionFailure.tryCatch(() ->
+                createPooled(
+                    createDataSource(driver, properties),
+                    testSql,
+                    poolConfig
+                )
+            );
+        }
+
+        private static Live createPooled(
+            DataSource dataSource,
+            String testSql,
+            PoolConfig poolConfig
+        ) throws SQLException
+        {
+            final Map<Connection, ConnectionState> connectionStates =
+                new ConcurrentHashMap<>();
+            final ConnectionPool pool = ConnectionPool.create(
+                dataSource::getConnection,
+                poolConfig,
+                connection -> closeState(connectionStates, connection)
+            );
+            try {
+                final Connection conn = pool.acquire();
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeQuery(testSql).close();
+                } finally {
+                    pool.release(conn);
+                }
+                return new Live(pool, connectionStates);
+            } catch (SQLException | RuntimeException e) {
+                pool.close();
+                throw e;
+            }
+        }
+
+        private static DataSource createDataSource(
+            String driver,
+            Tuple2<String, String>[] properties
+        ) throws Exception
+        {
+            final Class<?> type = Class.forName(driver);
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            final DataSource dataSource = (DataSource) constructor.newInstance();
+            for (final Tuple2<String, String> property : properties) {
+                final Method method = type.getMethod(
+                    "set" + property._1(),
+                    String.class
+                );
+                method.invoke(dataSource, property._2());
+            }
+            return dataSource;
+        }
+
+        /**
+         * Closes the idle connections of the pool, if there is one. Leased
+         * connections are closed when they are given back.
+         */
+        @Override
+        public void close()
+        {
+            parallelRunner.close();
+            watchdog.close();
+            if (pool != null) {
+                pool.close();
+            }
+        }
+
         public <T> IO<Failure, T> querySingle(
             String sql,
             Extractor<T> createObject,
             Object... params
         )
         {
-            ThrowingConsumer<PreparedStatement, SQLException> prepare = ps -> {
-                for (int i = 0; i < params.length; i++) {
-                    ps.setObject(i + 1, params[i]);
-                }
-            };
+            ThrowingConsumer<PreparedStatement, SQLException> prepare =
+                ps -> parameterTypes.bind(sql, ps, params);
 
             return querySinglePrepared(sql, prepare, createObject);
         }
@@ -235,53 +731,300 @@ public class Repository
             Object... params
         )
         {
-            ThrowingConsumer<PreparedStatement, SQLException> prepare = ps -> {
-                for (int i = 0; i < params.length; i++) {
-                    ps.setObject(i + 1, params[i]);
-                }
-            };
+            ThrowingConsumer<PreparedStatement, SQLException> prepare =
+                ps -> parameterTypes.bind(sql, ps, params);
 
             return queryPrepared(sql, prepare, createObject, fn);
         }
 
+        public <R, T> IO<Failure, R> query(
+            String sql,
+            QueryOptions options,
+            Extractor<T> createObject,
+            Function<Stream<T>, IO<Failure, R>> fn,
+            Object... params
+        )
+        {
+            ThrowingConsumer<PreparedStatement, SQLException> prepare =
+                ps -> parameterTypes.bind(sql, ps, params);
+
+            return queryPrepared(sql, options, prepare, createObject, fn);
+        }
+
+        public <R, T> IO<Failure, R> queryPrepared(
+            String sql,
+            ThrowingConsumer<PreparedStatement, SQLException> prepare,
+            Extractor<T> createObject,
+            Function<Stream<T>, IO<Failure, R>> fn
+        )
+        {
+            return queryPrepared(
+                sql,
+                QueryOptions.defaults(),
+                prepare,
+                createObject,
+                fn
+            );
+        }
+
         public <R, T> IO<Failure, R> queryPrepared(
             String sql,
+            QueryOptions options,
             ThrowingConsumer<PreparedStatement, SQLException> prepare,
             Extractor<T> createObject,
             Function<Stream<T>, IO<Failure, R>> fn
         )
         {
-            return IO.bracket(IO.absolve(IO.access(Connection.class, connection -> {
-                    PreparedStatement stmt;
+            return IO.bracket(withConnection(connection -> {
+                    final StatementCache.Key key = options.statementKey(sql);
+                    PreparedStatement stmt = null;
+                    boolean autoCommitOff = false;
 
                     try {
-                        stmt = connection.prepareStatement(sql);
+                        if (options.isStreaming() && connection.getAutoCommit()) {
+                            connection.setAutoCommit(false);
+                            autoCommitOff = true;
+                        }
+
+                        stmt = prepare(connection, key);
 
+                        options.apply(stmt);
                         prepare.accept(stmt);
 
+                        started(connection, stmt, options.queryTimeout());
                         ResultSet rs = stmt.executeQuery();
-                        return Right.of(stream(rs, createObject));
+                        final PreparedStatement executed = stmt;
+                        final boolean restoreAutoCommit = autoCommitOff;
+                        return Right.of(stream(
+                            rs,
+                            createObject,
+                            options.prefetch(),
+                            () -> {
+                                try {
+                                    finished(connection, executed);
+                                    release(connection, key, executed);
+                                } finally {
+                                    if (restoreAutoCommit) {
+                                        connection.setAutoCommit(true);
+                                    }
+                                }
+                            }
+                        ));
                     } catch (Exception e) {
+                        if (stmt != null) {
+                            finished(connection, stmt);
+                        }
+                        closeQuietly(stmt);
+                        if (autoCommitOff) {
+                            setAutoCommitQuietly(connection);
+                        }
                         return Left.of(
                             ExceptionFailure.of(e)
                         );
                     }
-                })),
+                }),
                 iterator -> IO.effect(() -> ((AutoCloseable) iterator).close()),
                 fn
             ).blocking();
         }
 
-        public IO<Failure, Integer> update(
+        /**
+         * The publisher does not use the connection of the environment,
+         * every subscription gets its own one from this repository.
+         */
+        public <T> IO<Failure, Flow.Publisher<T>> queryPublisher(
+            final String sql,
+            final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+            final Extractor<T> createObject
+        )
+        {
+            return IO.succeed(new QueryPublisher<>(
+                () -> openRows(sql, prepare, createObject),
+                parallelRunner::execute
+            ));
+        }
+
+        /**
+         * Runs the query for every key range on a connection of its own,
+         * and passes the rows of all of them to {@code fn} as one stream.
+         * The {@code {range}} in the SQL is replaced by the condition of a
+         * range on the key column, e.g.
+         * {@code SELECT id, name FROM person WHERE {range}}. The ranges
+         * can be computed by {@link KeyRange#split} or
+         * {@link KeyRange#ntile}.
+         * <p>
+         * The ranges are read on the repository's own threads, as many at
+         * once as the pool has free connections when the scan starts, or
+         * all of them without a pool. The rows of a range keep their
+         * order, the rows of different ranges are interleaved.
+         * <p>
+         * The stream is parallel, and it splits by the readers, so its
+         * operations run on as many threads as there are readers. The
+         * readers are stopped and their connections given back when
+         * {@code fn} returns, even if the stream was not read to its end.
+         */
+        public <R, T> IO<Failure, R> parallelScan(
+            final String sql,
+            final String keyColumn,
+            final List<KeyRange> ranges,
+            final Extractor<T> createObject,
+            final Function<Stream<T>, IO<Failure, R>> fn
+        )
+        {
+            final IO<Failure, RangeReader<T>> start = IO.effectTotal(() ->
+                new RangeReader<>(
+                    ranges,
+                    range -> openRows(
+                        sql.replace("{range}", range.condition(keyColumn)),
+                        ps -> range.bind(ps, 1),
+                        createObject
+                    ),
+                    pool == null ? ranges.size() : pool.available(),
+                    SCAN_BUFFER_ROWS,
+                    parallelRunner::execute
+                )
+            );
+            return IO.bracket(
+                start,
+                rows -> IO.effect(rows::close),
+                rows -> fn.apply(StreamSupport.stream(rows.spliterator(), true))
+            ).blocking();
+        }
+
+        /**
+         * Reads the rows of the query page by page, e.g. by
+         * {@code SELECT id, name FROM person WHERE id > ? ORDER BY id
+         * LIMIT ?}. The first parameter is bound to the key of the last
+         * row of the previous page, {@code initialKey} for the first page,
+         * the second one to the page size.
+         * <p>
+         * Every page is read on a connection taken for it, so no cursor
+         * or transaction stays open while the rows are consumed. The next
+         * page is read while the rows of the current one are consumed.
+         */
+        public <R, T, K> IO<Failure, R> streamByKeyset(
+            final String sql,
+            final K initialKey,
+            final Function<T, K> keyOf,
+            final Extractor<T> createObject,
+            final int pageSize,
+            final Function<Stream<T>, IO<Failure, R>> fn
+        )
+        {
+            if (pageSize < 1) {
+                return IO.fail(Cause.fail(
+                    GeneralFailure.of("Wrong page size: " + pageSize)
+                ));
+            }
+            final IO<Failure, KeysetIterator<T, K>> start = IO.effectTotal(() ->
+                new KeysetIterator<>(
+                    initialKey,
+                    key -> readPage(sql, key, pageSize, createObject),
+                    keyOf,
+                    pageSize,
+                    parallelRunner::execute
+                )
+            );
+            return IO.bracket(
+                start,
+                rows -> IO.effect(rows::close),
+                rows -> fn.apply(StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED),
+                    false
+                ))
+            ).blocking();
+        }
+
+        private <T, K> List<T> readPage(
+            final String sql,
+            final K key,
+            final int pageSize,
+            final Extractor<T> createObject
+        ) throws Exception
+        {
+            final Iterator<T> rows = openRows(
+                sql,
+                ps -> {
+                    Params.bind(ps, 1, key, Types.NULL);
+                    ps.setInt(2, pageSize);
+                },
+                createObject
+            );
+            try {
+                final List<T> page = new ArrayList<>(pageSize);
+                rows.forEachRemaining(page::add);
+                return page;
+            } finally {
+                ((AutoCloseable) rows).close();
+            }
+        }
+
+        /**
+         * Reads the rows of a numeric query into primitive columns, so no
+         * object is created per row or value.
+         */
+        public IO<Failure, ColumnarResult> queryColumnar(
             final String sql,
             Object... params
         )
         {
-            ThrowingConsumer<PreparedStatement, SQLException> prepare = ps -> {
-                for (int i = 0; i < params.length; i++) {
-                    ps.setObject(i + 1, params[i]);
+            return withConnection(connection ->
+                runPrepared(
+                    connection,
+                    StatementCache.Key.of(sql),
+                    ps -> parameterTypes.bind(sql, ps, params),
+                    stmt -> {
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            return ColumnarResult.read(rs);
+                        }
+                    }
+                )
+            );
+        }
+
+        private <T> Iterator<T> openRows(
+            final String sql,
+            final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+            final Extractor<T> createObject
+        ) throws Exception
+        {
+            final Connection connection = acquire();
+            final StatementCache.Key key = StatementCache.Key.of(sql);
+            PreparedStatement stmt = null;
+
+            try {
+                stmt = prepare(connection, key);
+                prepare.accept(stmt);
+
+                started(connection, stmt, Duration.ZERO);
+                final ResultSet rs = stmt.executeQuery();
+                final PreparedStatement executed = stmt;
+                return new ResultSetIterator<>(rs, createObject, () -> {
+                    try {
+                        finished(connection, executed);
+                        release(connection, key, executed);
+                    } finally {
+                        release(connection);
+                    }
+                });
+            } catch (Exception e) {
+                closeQuietly(stmt);
+                try {
+                    release(connection);
+                } catch (SQLException releaseException) {
+                    e.addSuppressed(releaseException);
                 }
-            };
+                throw e;
+            }
+        }
+
+        public IO<Failure, Integer> update(
+            final String sql,
+            Object... params
+        )
+        {
+            ThrowingConsumer<PreparedStatement, SQLException> prepare =
+                ps -> parameterTypes.bind(sql, ps, params);
 
             return updatePrepared(sql, prepare);
         }
@@ -291,17 +1034,16 @@ public class Repository
             final ThrowingConsumer<PreparedStatement, SQLException> prepare
         )
         {
-            return IO.absolve(IO.access(Connection.class, connection -> {
+            return withConnection(connection -> {
+                final StatementCache.Key key = StatementCache.Key.withGeneratedKeys(sql);
                 PreparedStatement stmt = null;
 
                 try {
-                    stmt = connection.prepareStatement(
-                        sql,
-                        Statement.RETURN_GENERATED_KEYS
-                    );
+                    stmt = prepare(connection, key);
 
                     prepare.accept(stmt);
 
+                    started(connection, stmt, Duration.ZERO);
                     stmt.executeUpdate();
 
                     Right<Failure, Integer> result;
@@ -324,60 +1066,536 @@ public class Repository
                 } finally {
                     try {
                         if (stmt != null) {
-                            stmt.close();
+                            finished(connection, stmt);
+                            release(connection, key, stmt);
                         }
                     } catch (SQLException e) {
                         //logger.error("Update prepared close error", e);
                     }
                 }
-            })).blocking();
+            });
+        }
+
+        public IO<Failure, Long> execute(
+            final String sql,
+            Object... params
+        )
+        {
+            return executePrepared(
+                sql,
+                ps -> parameterTypes.bind(sql, ps, params)
+            );
+        }
+
+        /**
+         * Runs the statement without asking for generated keys and returns
+         * the number of affected rows.
+         */
+        public IO<Failure, Long> executePrepared(
+            final String sql,
+            final ThrowingConsumer<PreparedStatement, SQLException> prepare
+        )
+        {
+            return withConnection(connection ->
+                runPrepared(
+                    connection,
+                    StatementCache.Key.of(sql),
+                    prepare,
+                    PreparedStatement::executeLargeUpdate
+                )
+            );
+        }
+
+        /**
+         * Runs the insert and returns the first column of the first
+         * generated key as a {@code long}. Fails if there is no generated
+         * key.
+         */
+        public IO<Failure, Long> insertReturningKey(
+            final String sql,
+            Object... params
+        )
+        {
+            return withConnection(connection ->
+                runPrepared(
+                    connection,
+                    StatementCache.Key.withGeneratedKeys(sql),
+                    ps -> parameterTypes.bind(sql, ps, params),
+                    stmt -> {
+                        stmt.executeLargeUpdate();
+                        try (ResultSet keys = stmt.getGeneratedKeys()) {
+                            if (!keys.next()) {
+                                throw new SQLException("No generated key: " + sql);
+                            }
+                            return keys.getLong(1);
+                        }
+                    }
+                )
+            );
+        }
+
+        /**
+         * Inserts the rows as one batch and returns the generated keys of
+         * them, in the order of the rows. A key record has the
+         * {@code keyColumns}, or every generated column if the list is
+         * empty, so composite keys are returned too.
+         */
+        public <T> IO<Failure, List<Record>> insertReturningKeys(
+            final String sql,
+            final List<String> keyColumns,
+            final Iterable<T> rows,
+            final Binder<T> binder
+        )
+        {
+            return withConnection(connection ->
+                runPrepared(
+                    connection,
+                    StatementCache.Key.withKeyColumns(sql, keyColumns),
+                    stmt -> {
+                        for (T row : rows) {
+                            binder.bind(stmt, row);
+                            stmt.addBatch();
+                        }
+                    },
+                    stmt -> {
+                        stmt.executeLargeBatch();
+                        final List<Record> records = new ArrayList<>();
+                        try (ResultSet keys = stmt.getGeneratedKeys()) {
+                            while (keys.next()) {
+                                final Either<Failure, Record> record = Record.of(keys);
+                                if (!record.isRight()) {
+                                    throw new SQLException(
+                                        "Generated key is not readable: " + record.left()
+                                    );
+                                }
+                                records.add(record.right());
+                            }
+                        }
+                        return records;
+                    }
+                )
+            );
+        }
+
+        /**
+         * Inserts the records into the table and returns the number of
+         * inserted rows. The columns are the fields of the first record,
+         * every record has to have the same fields.
+         * <p>
+         * The records are inserted by several statements, so a failure
+         * can leave some of them inserted, unless it runs in a
+         * {@code transaction}.
+         */
+        public IO<Failure, Long> bulkInsert(
+            final String table,
+            final Stream<Record> records
+        )
+        {
+            return withConnection(connection -> {
+                try (Stream<Record> closing = records) {
+                    final Iterator<Record> iterator = closing.iterator();
+                    if (!iterator.hasNext()) {
+                        return Right.of(0L);
+                    }
+
+                    final Record first = iterator.next();
+                    final BulkInsert insert = BulkInsert.of(
+                        table,
+                        first,
+                        BulkInsert.Identifiers.of(connection)
+                    );
+                    if (BulkInsert.isPostgres(connection)) {
+                        return Right.of(insert.copyIn(
+                            connection,
+                            Stream.concat(
+                                Stream.of(first),
+                                StreamSupport.stream(
+                                    Spliterators.spliteratorUnknownSize(iterator, 0),
+                                    false
+                                )
+                            ).iterator()
+                        ));
+                    }
+                    return insertChunks(connection, insert, first, iterator);
+                } catch (Exception e) {
+                    return Left.of(ExceptionFailure.of(e));
+                }
+            });
+        }
+
+        private Either<Failure, Long> insertChunks(
+            final Connection connection,
+            final BulkInsert insert,
+            final Record first,
+            final Iterator<Record> records
+        )
+        {
+            final int rowsPerStatement = insert.rowsPerStatement();
+            final List<Record> chunk = new ArrayList<>(rowsPerStatement);
+            chunk.add(first);
+            long count = 0;
+            while (true) {
+                while (chunk.size() < rowsPerStatement && records.hasNext()) {
+                    chunk.add(records.next());
+                }
+                if (chunk.isEmpty()) {
+                    return Right.of(count);
+                }
+
+                final List<Record> rows = chunk.subList(
+                    0,
+                    insert.chunkSize(chunk.size())
+                );
+                final Either<Failure, Long> inserted = runPrepared(
+                    connection,
+                    StatementCache.Key.of(insert.insertSql(rows.size())),
+                    ps -> insert.bind(ps, rows),
+                    PreparedStatement::executeLargeUpdate
+                );
+                if (!inserted.isRight()) {
+                    return inserted;
+                }
+                count += inserted.right();
+                rows.clear();
+            }
+        }
+
+        /**
+         * Prepares the statement of the key, binds and runs it, then
+         * releases it.
+         */
+        private <T> Either<Failure, T> runPrepared(
+            final Connection connection,
+            final StatementCache.Key key,
+            final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+            final ThrowingFunction<PreparedStatement, T, SQLException> run
+        )
+        {
+            PreparedStatement stmt = null;
+            try {
+                stmt = prepare(connection, key);
+                prepare.accept(stmt);
+
+                started(connection, stmt, Duration.ZERO);
+                final T result = run.apply(stmt);
+                finished(connection, stmt);
+                release(connection, key, stmt);
+                return Right.of(result);
+            } catch (Exception e) {
+                if (stmt != null) {
+                    finished(connection, stmt);
+                }
+                closeQuietly(stmt);
+                return Left.of(ExceptionFailure.of(e));
+            }
+        }
+
+        public IO<Failure, Integer> batchUpdate(String... sqls)
+        {
+            return withConnection(connection ->
+                ExceptionFailure.tryCatchFinal(
+                    connection::createStatement,
+                    stmt -> {
+                        for (String sql : sqls) {
+                            stmt.addBatch(sql);
+                        }
+                        started(connection, stmt, Duration.ZERO);
+                        int count = 0;
+                        for (int updateCount : stmt.executeBatch()) {
+                            count += Math.max(updateCount, 0);
+                        }
+                        return count;
+                    },
+                    stmt -> {
+                        finished(connection, stmt);
+                        stmt.close();
+                    }
+                )
+            );
+        }
+
+        /**
+         * Binds the rows one by one and sends them to the database in
+         * batches of {@code chunkSize}. The result holds the update count
+         * of every row, in the order of {@code rows}.
+         */
+        public <T> IO<Failure, int[]> batchUpdatePrepared(
+            final String sql,
+            final Iterable<T> rows,
+            final Binder<T> binder,
+            final int chunkSize
+        )
+        {
+            return withConnection(connection -> {
+                if (chunkSize < 1) {
+                    return Left.of(
+                        GeneralFailure.of("Wrong chunk size: " + chunkSize)
+                    );
+                }
+
+                final StatementCache.Key key = StatementCache.Key.of(sql);
+                PreparedStatement stmt = null;
+
+                try {
+                    stmt = prepare(connection, key);
+                    started(connection, stmt, Duration.ZERO);
+
+                    final IntStream.Builder updateCounts = IntStream.builder();
+                    int pending = 0;
+                    for (T row : rows) {
+                        binder.bind(stmt, row);
+                        stmt.addBatch();
+                        if (++pending == chunkSize) {
+                            for (int updateCount : stmt.executeBatch()) {
+                                updateCounts.add(updateCount);
+                            }
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        for (int updateCount : stmt.executeBatch()) {
+                            updateCounts.add(updateCount);
+                        }
+                    }
+
+                    finished(connection, stmt);
+                    release(connection, key, stmt);
+                    return Right.of(updateCounts.build().toArray());
+                } catch (Exception e) {
+                    if (stmt != null) {
+                        finished(connection, stmt);
+                    }
+                    closeQuietly(stmt);
+                    return Left.of(
+                        ExceptionFailure.of(e)
+                    );
+                }
+            });
+        }
+
+        public IO<Failure, StatementCacheStats> statementCacheStats()
+        {
+            return IO.effectTotal(statementCounters::stats);
+        }
+
+        public IO<Failure, RetryStats> retryStats()
+        {
+            return IO.effectTotal(retryCounters::stats);
+        }
+
+        public IO<Failure, PoolStats> poolStats()
+        {
+            return pool == null
+                ? IO.fail(Cause.fail(GeneralFailure.of("Connection pool is not enabled")))
+                : IO.effectTotal(pool::stats);
+        }
+
+        private IO<Failure, Connection> setAutoCommit(
+            Connection connection,
+            boolean flag
+        )
+        {
+            return runBlocking(() -> {
+                connection.setAutoCommit(flag);
+                return connection;
+            });
+        }
+
+        public <T> IO<Failure, T> transaction(
+            IO<Failure, T> dbCommand
+        )
+        {
+            if (settings.retryPolicy.maxAttempts() == 1) {
+                return runTransaction(dbCommand);
+            }
+            return isOutermost().flatMap(outermost -> outermost
+                ? retryTransaction(dbCommand, 1)
+                : runTransaction(dbCommand)
+            );
+        }
+
+        /**
+         * Whether a transaction would be the outermost one on the
+         * connection, by the same depth {@code runTransaction} goes by,
+         * whatever the auto-commit mode of the connection is.
+         */
+        private IO<Failure, Boolean> isOutermost()
+        {
+            return IO.access(Connection.class, connection ->
+                transactionDepth(connection) == 0
+            );
+        }
+
+        private int transactionDepth(final Connection connection)
+        {
+            final ConnectionState state = connectionStates.get(connection);
+            return state == null ? 0 : state.transactionDepth();
+        }
+
+        private <T> IO<Failure, T> retryTransaction(
+            final IO<Failure, T> dbCommand,
+            final int attempt
+        )
+        {
+            final RetryPolicy retryPolicy = settings.retryPolicy;
+            return runTransaction(dbCommand).either().flatMap(result -> {
+                if (result.isRight()) {
+                    if (attempt > 1) {
+                        retryCounters.recovered();
+                    }
+                    return IO.succeed(result.right());
+                }
+
+                final Failure failure = result.left();
+                if (retryPolicy.retries(failure, attempt)) {
+                    retryCounters.retried();
+                    return pause(retryPolicy.backoff(attempt))
+                        .flatMap(v -> retryTransaction(dbCommand, attempt + 1));
+                }
+                if (retryPolicy.isRetryable(failure)) {
+                    retryCounters.exhausted();
+                }
+                return IO.fail(Cause.fail(failure));
+            });
+        }
+
+        private static IO<Failure, Void> pause(final Duration duration)
+        {
+            final IO<Failure, Void> sleep = IO.effect(() ->
+                TimeUnit.NANOSECONDS.sleep(duration.toNanos())
+            );
+            return sleep.blocking();
+        }
+
+        /**
+         * A transaction within a transaction runs from a savepoint, so its
+         * failure rolls back only its own work, and the outer transaction
+         * can go on.
+         */
+        private <T> IO<Failure, T> runTransaction(
+            final IO<Failure, T> dbCommand
+        )
+        {
+            return IO.access(Connection.class, conn -> conn).flatMap(connection -> {
+                final ConnectionState state = connectionStates.get(connection);
+                if (transactionDepth(connection) > 0) {
+                    return nestedTransaction(connection, state, dbCommand);
+                }
+                return IO.bracket(
+                    beginTransaction(connection, state),
+                    connection2 -> endTransaction(connection, state),
+                    connection3 -> dbCommand.peekM(t ->
+                        runBlocking(() -> {
+                            connection3.commit();
+                            return connection3;
+                        })
+                    ).recover(failure -> this.<T>rollback(connection3, failure))
+                );
+            });
+        }
+
+        private IO<Failure, Connection> beginTransaction(
+            final Connection connection,
+            final ConnectionState state
+        )
+        {
+            return setAutoCommit(connection, false).peek(c -> {
+                if (state != null) {
+                    state.enterTransaction();
+                }
+            });
         }
 
-        public IO<Failure, Integer> batchUpdate(String... sqls)
+        private IO<Failure, Connection> endTransaction(
+            final Connection connection,
+            final ConnectionState state
+        )
         {
-            return batchUpdateLoop(sqls, 0);
+            final IO<Failure, Connection> exit = IO.effectTotal(() -> {
+                if (state != null) {
+                    state.exitTransaction();
+                }
+                return connection;
+            });
+            return exit.flatMap(c -> setAutoCommit(connection, true));
         }
 
-        private IO<Failure, Integer> batchUpdateLoop(
-            String[] sqls,
-            int index
+        private <T> IO<Failure, T> nestedTransaction(
+            final Connection connection,
+            final ConnectionState state,
+            final IO<Failure, T> dbCommand
         )
         {
-            return IO.<Failure, Boolean>succeed(
-                sqls.length <= index
-            ).flatMap((Boolean b) -> b ?
-                IO.succeed(0) :
-                update(sqls[index])
-                    .flatMap(v -> batchUpdateLoop(sqls, index + 1))
+            final IO<Failure, Savepoint> setSavepoint = runBlocking(() -> {
+                final Savepoint savepoint = connection.setSavepoint();
+                state.enterTransaction();
+                return savepoint;
+            });
+            return IO.bracket(
+                setSavepoint,
+                savepoint -> IO.effectTotal(() -> {
+                    state.exitTransaction();
+                    return savepoint;
+                }),
+                savepoint -> dbCommand.peekM(t -> runBlocking(() -> {
+                    releaseQuietly(connection, savepoint);
+                    return savepoint;
+                })).recover(failure -> this.<T>rollback(connection, savepoint, failure))
             );
         }
 
-        private IO<Failure, Connection> setAutoCommit(
-            Connection connection,
-            boolean flag
+        /**
+         * Rolls back to the savepoint, then releases it, as the savepoint
+         * stays after a rollback to it.
+         */
+        private <T> IO<Failure, T> rollback(
+            final Connection connection,
+            final Savepoint savepoint,
+            final Failure failure
         )
         {
-            return IO.absolve(IO.effectTotal(() ->
-                ExceptionFailure.tryCatch(() -> {
-                    connection.setAutoCommit(flag);
-                    return connection;
-                })
+            return failAfter(
+                runBlocking(() -> {
+                    try {
+                        connection.rollback(savepoint);
+                    } finally {
+                        releaseQuietly(connection, savepoint);
+                    }
+                    return savepoint;
+                }),
+                failure
+            );
+        }
+
+        /**
+         * Fails with the failure after the rollback, and with the failure
+         * of the rollback too if it failed.
+         */
+        private static <T, R> IO<Failure, T> failAfter(
+            final IO<Failure, R> rollback,
+            final Failure failure
+        )
+        {
+            return rollback.either().flatMap(result -> IO.fail(
+                result.isRight()
+                    ? Cause.fail(failure)
+                    : Cause.fail(failure).then(Cause.fail(result.left()))
             ));
         }
 
-        public <T> IO<Failure, T> transaction(
-            IO<Failure, T> dbCommand
+        /**
+         * Releasing a savepoint only frees it early, some drivers do not
+         * support it and throw {@code SQLFeatureNotSupportedException}.
+         */
+        private static void releaseQuietly(
+            final Connection connection,
+            final Savepoint savepoint
         )
         {
-            return IO.access(Connection.class, conn -> conn).flatMap(
-                connection -> IO.bracket(
-                    setAutoCommit(connection, false),
-                    connection2 -> setAutoCommit(connection, true),
-                    connection3 -> dbCommand.peekM(t ->
-                        IO.effect(connection3::commit)
-                    ).recover(failure -> this.<T>rollback(connection3, failure))
-                )
-            ).blocking();
+            try {
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException ignored) {
+            }
         }
 
         private <T> IO<Failure, T> rollback(
@@ -385,15 +1603,56 @@ public class Repository
             Failure failure
         )
         {
-            try {
-                connection.rollback();
-            } catch (SQLException e) {
-                return IO.fail(
-                    Cause.fail(failure)
-                        .then(Cause.fail(ExceptionFailure.of(e)))
-                );
-            }
-            return IO.fail(Cause.fail(failure));
+            return failAfter(
+                runBlocking(() -> {
+                    connection.rollback();
+                    return connection;
+                }),
+                failure
+            );
+        }
+
+        /**
+         * Every statement of the command has to finish before the deadline
+         * {@code timeout} from now, or before the deadline of an outer
+         * {@code withTimeout}, if it is sooner. A statement started after
+         * the deadline fails without running, one still running at the
+         * deadline is cancelled.
+         */
+        public <T> IO<Failure, T> withTimeout(
+            Duration timeout,
+            IO<Failure, T> dbCommand
+        )
+        {
+            return IO.bracket(
+                startDeadline(timeout),
+                scope -> IO.effect(() -> scope.state().deadline(scope.previous())),
+                scope -> dbCommand
+            );
+        }
+
+        private IO<Failure, DeadlineScope> startDeadline(final Duration timeout)
+        {
+            return IO.absolve(IO.access(Connection.class, connection -> {
+                final ConnectionState state = connectionStates.get(connection);
+                if (state == null) {
+                    return Left.of(GeneralFailure.of("Connection is not in use"));
+                }
+                if (timeout.isNegative()) {
+                    return Left.of(GeneralFailure.of("Negative timeout: " + timeout));
+                }
+
+                final long previous = state.deadline();
+                final long deadline = System.nanoTime() + timeout.toNanos();
+                if (previous == ConnectionState.NO_DEADLINE || deadline - previous < 0) {
+                    state.deadline(deadline);
+                }
+                return Right.of(new DeadlineScope(state, previous));
+            }));
+        }
+
+        private record DeadlineScope(ConnectionState state, long previous)
+        {
         }
 
         public <T> IO<Failure, Stream<T>> mapToStream(
@@ -474,23 +1733,181 @@ public class Repository
             });
         }
 
+        /**
+         * Every mapper IO gets its own connection through the Service of
+         * the environment, so up to {@code parallelism} of them can run
+         * at once. The mapper IOs run on the runtime of the repository
+         * (see {@link #withRuntime}), so their environment holds the
+         * Service, the entries of the {@code passed} types taken from the
+         * caller's environment and the context of that runtime.
+         * <p>
+         * A mapper IO runs outside the caller's transaction, in one of its
+         * own if it asks for it: a connection can not be shared by
+         * threads. A mapper already running is not stopped when the caller
+         * fails or is interrupted.
+         * <p>
+         * The caller keeps its own connection while it waits for the
+         * mappers, e.g. a {@code use} around the call, or the query of
+         * {@code io} still reading its rows. So the pool should have a
+         * connection for the caller and one for every mapper, at least
+         * {@code parallelism + 1}. With fewer, the mappers wait for each
+         * other's connections; with none left but the caller's, they fail
+         * after the acquire timeout of the pool.
+         */
+        public <R, U> IO<Failure, Stream<Either<Failure, R>>> mapStreamEitherPar(
+            IO<Failure, Stream<Either<Failure, U>>> io,
+            Function<U, IO<Failure, R>> mapper,
+            int parallelism,
+            Class<?>... passed
+        )
+        {
+            if (parallelism < 1) {
+                return IO.fail(Cause.fail(
+                    GeneralFailure.of("Wrong parallelism: " + parallelism)
+                ));
+            }
+            IO<Failure, List<Passed<?>>> environment = IO.succeed(new ArrayList<>());
+            for (Class<?> type : passed) {
+                environment = environment.flatMap(entries ->
+                    Passed.of(type).map(entry -> {
+                        entries.add(entry);
+                        return entries;
+                    })
+                );
+            }
+            return environment.flatMap(entries ->
+                IO.accessM(Service.class, service -> io.flatMap(stream ->
+                    mapParallel(service, entries, stream, mapper, parallelism)
+                ))
+            );
+        }
+
+        private <R, U> IO<Failure, Stream<Either<Failure, R>>> mapParallel(
+            final Service service,
+            final List<Passed<?>> passed,
+            final Stream<Either<Failure, U>> stream,
+            final Function<U, IO<Failure, R>> mapper,
+            final int parallelism
+        )
+        {
+            final Function<U, IO<Failure, R>> connected = value -> {
+                IO<Failure, R> command = service.use(mapper.apply(value));
+                for (Passed<?> entry : passed) {
+                    command = entry.provide(command);
+                }
+                return command.provide(Service.class, service);
+            };
+
+            return IO.effect(() ->
+                parallelRunner.map(stream, connected, parallelism)
+            ).blocking();
+        }
+
+        private record Passed<C>(Class<C> type, C value)
+        {
+            static <C> IO<Failure, Passed<C>> of(final Class<C> type)
+            {
+                return IO.access(type, value -> new Passed<>(type, value));
+            }
+
+            <R> IO<Failure, R> provide(final IO<Failure, R> command)
+            {
+                return command.provide(type, value);
+            }
+        }
+
+        private static void setAutoCommitQuietly(final Connection connection)
+        {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ignored) {
+            }
+        }
+
+        private static void closeQuietly(final Statement statement)
+        {
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException ignored) {
+            }
+        }
+
         private <T> Stream<T> stream(
             final ResultSet resultSet,
-            final Extractor<T> extractor
+            final Extractor<T> extractor,
+            final int prefetch,
+            final AutoCloseable statementRelease
         )
         {
-            Live.ResultSetIterator<T> iterator = new Live.ResultSetIterator<>(resultSet, extractor);
+            final Live.ResultSetIterator<T> rows = new Live.ResultSetIterator<>(
+                resultSet,
+                extractor,
+                statementRelease
+            );
+            final Iterator<T> iterator = prefetch > 0
+                ? new PrefetchIterator<>(rows, rows, prefetch, parallelRunner::execute)
+                : rows;
             return StreamSupport.stream(
                 Spliterators.spliteratorUnknownSize(iterator, 0),
                 false
             ).onClose(() -> {
                 try {
-                    iterator.close();
+                    ((AutoCloseable) iterator).close();
                 } catch (Exception ignored) {
                 }
             });
         }
 
+        private static final class Settings
+        {
+            private static final Settings DEFAULT =
+                new Settings(0, Duration.ZERO, RetryPolicy.NONE);
+
+            private final int statementCacheSize;
+
+            private final Duration queryTimeout;
+
+            private final RetryPolicy retryPolicy;
+
+            private Settings(
+                final int statementCacheSize,
+                final Duration queryTimeout,
+                final RetryPolicy retryPolicy
+            )
+            {
+                this.statementCacheSize = statementCacheSize;
+                this.queryTimeout = queryTimeout;
+                this.retryPolicy = retryPolicy;
+            }
+
+            private Settings withStatementCacheSize(final int size)
+            {
+                if (size < 0) {
+                    throw new IllegalArgumentException(
+                        "Wrong statement cache size: " + size
+                    );
+                }
+                return new Settings(size, queryTimeout, retryPolicy);
+            }
+
+            private Settings withQueryTimeout(final Duration timeout)
+            {
+                if (timeout.isNegative()) {
+                    throw new IllegalArgumentException(
+                        "Negative query timeout: " + timeout
+                    );
+                }
+                return new Settings(statementCacheSize, timeout, retryPolicy);
+            }
+
+            private Settings withRetryPolicy(final RetryPolicy policy)
+            {
+                return new Settings(statementCacheSize, queryTimeout, policy);
+            }
+        }
+
         private static class ResultSetIterator<T>
             implements Iterator<T>, AutoCloseable
         {
@@ -502,10 +1919,17 @@ public class Repository
 
             private final Extractor<T> extractor;
 
-            public ResultSetIterator(final ResultSet resultSet, final Extractor<T> extractor)
+            private final AutoCloseable statementRelease;
+
+            public ResultSetIterator(
+                final ResultSet resultSet,
+                final Extractor<T> extractor,
+                final AutoCloseable statementRelease
+            )
             {
                 this.extractor = extractor;
                 this.resultSet = resultSet;
+                this.statementRelease = statementRelease;
             }
 
             @Override
@@ -536,10 +1960,13 @@ public class Repository
             }
 
             @Override
-            public void close() throws SQLException
+            public void close() throws Exception
             {
-                resultSet.getStatement().close();
-                resultSet.close();
+                try {
+                    resultSet.close();
+                } finally {
+                    statementRelease.close();
+                }
             }
         }
     }
@@ -601,6 +2028,104 @@ public class Repository
         );
     }
 
+    public static <R, T> IO<Failure, R> query(
+        String sql,
+        QueryOptions options,
+        Extractor<T> createObject,
+        Function<Stream<T>, IO<Failure, R>> fn,
+        Object... params
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.query(sql, options, createObject, fn, params)
+        );
+    }
+
+    public static <R, T> IO<Failure, R> queryPrepared(
+        String sql,
+        QueryOptions options,
+        ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        Extractor<T> createObject,
+        Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.queryPrepared(sql, options, prepare, createObject, fn)
+        );
+    }
+
+    public static <T> IO<Failure, Flow.Publisher<T>> queryPublisher(
+        String sql,
+        ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        Extractor<T> createObject
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.queryPublisher(sql, prepare, createObject)
+        );
+    }
+
+    public static <T> IO<Failure, T> withTimeout(
+        Duration timeout,
+        IO<Failure, T> dbCommand
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.withTimeout(timeout, dbCommand)
+        );
+    }
+
+    public static <R, T> IO<Failure, R> parallelScan(
+        final String sql,
+        final String keyColumn,
+        final List<KeyRange> ranges,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.parallelScan(sql, keyColumn, ranges, createObject, fn)
+        );
+    }
+
+    public static <R, T, K> IO<Failure, R> streamByKeyset(
+        final String sql,
+        final K initialKey,
+        final Function<T, K> keyOf,
+        final Extractor<T> createObject,
+        final int pageSize,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.streamByKeyset(
+                sql,
+                initialKey,
+                keyOf,
+                createObject,
+                pageSize,
+                fn
+            )
+        );
+    }
+
+    public static IO<Failure, ColumnarResult> queryColumnar(
+        final String sql,
+        Object... params
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.queryColumnar(sql, params)
+        );
+    }
+
     public static IO<Failure, Integer> update(
         final String sql,
         Object... params
@@ -623,6 +2148,63 @@ public class Repository
         );
     }
 
+    public static IO<Failure, Long> execute(
+        final String sql,
+        Object... params
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.execute(sql, params)
+        );
+    }
+
+    public static IO<Failure, Long> executePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.executePrepared(sql, prepare)
+        );
+    }
+
+    public static IO<Failure, Long> insertReturningKey(
+        final String sql,
+        Object... params
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.insertReturningKey(sql, params)
+        );
+    }
+
+    public static <T> IO<Failure, List<Record>> insertReturningKeys(
+        final String sql,
+        final List<String> keyColumns,
+        final Iterable<T> rows,
+        final Binder<T> binder
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.insertReturningKeys(sql, keyColumns, rows, binder)
+        );
+    }
+
+    public static IO<Failure, Long> bulkInsert(
+        final String table,
+        final Stream<Record> records
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.bulkInsert(table, records)
+        );
+    }
+
     public static IO<Failure, Integer> batchUpdate(String... sqls)
     {
         return IO.accessM(
@@ -631,6 +2213,43 @@ public class Repository
         );
     }
 
+    public static <T> IO<Failure, int[]> batchUpdatePrepared(
+        String sql,
+        Iterable<T> rows,
+        Binder<T> binder,
+        int chunkSize
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.batchUpdatePrepared(sql, rows, binder, chunkSize)
+        );
+    }
+
+    public static IO<Failure, StatementCacheStats> statementCacheStats()
+    {
+        return IO.accessM(
+            Service.class,
+            Service::statementCacheStats
+        );
+    }
+
+    public static IO<Failure, RetryStats> retryStats()
+    {
+        return IO.accessM(
+            Service.class,
+            Service::retryStats
+        );
+    }
+
+    public static IO<Failure, PoolStats> poolStats()
+    {
+        return IO.accessM(
+            Service.class,
+            Service::poolStats
+        );
+    }
+
     public static <T> IO<Failure, T> transaction(
         IO<Failure, T> dbCommand
     )
@@ -681,4 +2300,17 @@ public class Repository
             env -> env.mapStreamEither(io, mapper)
         );
     }
+
+    public static <R, U> IO<Failure, Stream<Either<Failure, R>>> mapStreamEitherPar(
+        IO<Failure, Stream<Either<Failure, U>>> io,
+        Function<U, IO<Failure, R>> mapper,
+        int parallelism,
+        Class<?>... passed
+    )
+    {
+        return IO.accessM(
+            Service.class,
+            env -> env.mapStreamEitherPar(io, mapper, parallelism, passed)
+        );
+    }
 }
@@ -0,0 +1,235 @@
+package fp.jadobec;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import fp.util.ExceptionFailure;
+import fp.util.Failure;
+
+/**
+ * When a failed {@code transaction} is run again. A transaction is retried
+ * if it failed by an {@link SQLException} with one of the retryable SQL
+ * states, by default serialization failure ({@code 40001}) and deadlock
+ * ({@code 40P01}), while it has attempts left.
+ * <p>
+ * Before the next attempt it waits the exponential backoff, doubled for
+ * every attempt up to {@code maxBackoff}, and shortened by a random part
+ * of at most {@code jitter}, so the conflicting transactions do not run
+ * again at the same time.
+ */
+public final class RetryPolicy
+{
+    public static final RetryPolicy NONE = build(builder -> builder.maxAttempts(1));
+
+    private final int maxAttempts;
+
+    private final Duration initialBackoff;
+
+    private final Duration maxBackoff;
+
+    private final double jitter;
+
+    private final Set<String> retryableSqlStates;
+
+    private RetryPolicy(final Builder builder)
+    {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.jitter = builder.jitter;
+        this.retryableSqlStates = Set.copyOf(builder.retryableSqlStates);
+    }
+
+    public static RetryPolicy defaults()
+    {
+        return new Builder().build();
+    }
+
+    public static RetryPolicy build(Consumer<Builder> factory)
+    {
+        final Builder builder = new Builder();
+        factory.accept(builder);
+        return builder.build();
+    }
+
+    public int maxAttempts()
+    {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether the transaction that failed with {@code failure} in its
+     * {@code attempt}th attempt is run again.
+     */
+    public boolean retries(final Failure failure, final int attempt)
+    {
+        return attempt < maxAttempts && isRetryable(failure);
+    }
+
+    public boolean isRetryable(final Failure failure)
+    {
+        if (failure instanceof ExceptionFailure exceptionFailure) {
+            for (
+                Throwable cause = exceptionFailure.throwable;
+                cause != null;
+                cause = cause.getCause()
+            ) {
+                if (cause instanceof SQLException sqlException
+                    && isRetryable(sqlException)
+                ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isRetryable(final SQLException exception)
+    {
+        for (
+            SQLException next = exception;
+            next != null;
+            next = next.getNextException()
+        ) {
+            if (retryableSqlStates.contains(next.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The wait before the attempt after {@code attempt}. The doubling stops
+     * at {@code maxBackoff}, so a long backoff can not overflow.
+     */
+    public Duration backoff(final int attempt)
+    {
+        final long max = maxBackoff.toNanos();
+        long nanos = initialBackoff.toNanos();
+        for (int doubled = 1; doubled < attempt && 0 < nanos && nanos < max; doubled++) {
+            nanos = nanos > max / 2 ? max : nanos * 2;
+        }
+        final double shortened =
+            1.0 - jitter * ThreadLocalRandom.current().nextDouble();
+        return Duration.ofNanos((long) (nanos * shortened));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RetryPolicy(maxAttempts -> " + maxAttempts
+            + ", initialBackoff -> " + initialBackoff
+            + ", maxBackoff -> " + maxBackoff
+            + ", jitter -> " + jitter
+            + ", retryableSqlStates -> " + retryableSqlStates + ")";
+    }
+
+    static final class Counters
+    {
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder recovered = new LongAdder();
+
+        private final LongAdder exhausted = new LongAdder();
+
+        void retried()
+        {
+            retries.increment();
+        }
+
+        void recovered()
+        {
+            recovered.increment();
+        }
+
+        void exhausted()
+        {
+            exhausted.increment();
+        }
+
+        RetryStats stats()
+        {
+            return new RetryStats(
+                retries.sum(),
+                recovered.sum(),
+                exhausted.sum()
+            );
+        }
+    }
+
+    public static final class Builder
+    {
+        private int maxAttempts = 5;
+
+        private Duration initialBackoff = Duration.ofMillis(10);
+
+        private Duration maxBackoff = Duration.ofSeconds(1);
+
+        private double jitter = 0.5;
+
+        private Set<String> retryableSqlStates = Set.of("40001", "40P01");
+
+        private Builder()
+        {
+        }
+
+        /**
+         * The number of runs of a transaction, including the first one.
+         */
+        public Builder maxAttempts(int maxAttempts)
+        {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder initialBackoff(Duration initialBackoff)
+        {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        public Builder maxBackoff(Duration maxBackoff)
+        {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * The largest part of the backoff that is left out at random,
+         * between 0 and 1.
+         */
+        public Builder jitter(double jitter)
+        {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Builder retryableSqlStates(Set<String> retryableSqlStates)
+        {
+            this.retryableSqlStates = retryableSqlStates;
+            return this;
+        }
+
+        private RetryPolicy build()
+        {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException(
+                    "Wrong max attempts: " + maxAttempts
+                );
+            }
+            if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+                throw new IllegalArgumentException(
+                    "Wrong backoff: " + initialBackoff + " - " + maxBackoff
+                );
+            }
+            if (jitter < 0.0 || jitter > 1.0) {
+                throw new IllegalArgumentException("Wrong jitter: " + jitter);
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package fp.jadobec;
+
+/**
+ * Counters of the transaction retries of a repository. {@code retries} is
+ * the number of attempts after the first ones, {@code recovered} the
+ * number of transactions that succeeded after a retry and
+ * {@code exhausted} the number of transactions that failed with a
+ * retryable failure in their last attempt.
+ */
+public record RetryStats(long retries, long recovered, long exhausted)
+{
+}
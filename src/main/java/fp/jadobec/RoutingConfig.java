@@ -0,0 +1,154 @@
+package fp.jadobec;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+public final class RoutingConfig
+{
+    public enum Selection
+    {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+
+    private final Selection selection;
+
+    private final Duration readYourWrites;
+
+    private final String lagQuery;
+
+    private final Duration maxLag;
+
+    private final Duration lagProbeInterval;
+
+    private RoutingConfig(final Builder builder)
+    {
+        this.selection = builder.selection;
+        this.readYourWrites = builder.readYourWrites;
+        this.lagQuery = builder.lagQuery;
+        this.maxLag = builder.maxLag;
+        this.lagProbeInterval = builder.lagProbeInterval;
+    }
+
+    public static RoutingConfig defaults()
+    {
+        return new Builder().build();
+    }
+
+    public static RoutingConfig build(Consumer<Builder> factory)
+    {
+        final Builder builder = new Builder();
+        factory.accept(builder);
+        return builder.build();
+    }
+
+    public Selection selection()
+    {
+        return selection;
+    }
+
+    public Duration readYourWrites()
+    {
+        return readYourWrites;
+    }
+
+    public String lagQuery()
+    {
+        return lagQuery;
+    }
+
+    public Duration maxLag()
+    {
+        return maxLag;
+    }
+
+    public Duration lagProbeInterval()
+    {
+        return lagProbeInterval;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RoutingConfig(selection -> " + selection
+            + ", readYourWrites -> " + readYourWrites
+            + ", maxLag -> " + maxLag + ")";
+    }
+
+    public static final class Builder
+    {
+        private Selection selection = Selection.ROUND_ROBIN;
+
+        private Duration readYourWrites = Duration.ZERO;
+
+        private String lagQuery = null;
+
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        private Duration lagProbeInterval = Duration.ofSeconds(1);
+
+        private Builder()
+        {
+        }
+
+        public Builder selection(Selection selection)
+        {
+            this.selection = selection;
+            return this;
+        }
+
+        /**
+         * The reads of a {@code use} go to the primary for this long after
+         * its last write, so they see the written rows. Zero, the default,
+         * turns it off.
+         */
+        public Builder readYourWrites(Duration readYourWrites)
+        {
+            this.readYourWrites = readYourWrites;
+            return this;
+        }
+
+        /**
+         * The query returning the replication lag of a replica in seconds,
+         * e.g. on PostgreSQL
+         * {@code SELECT COALESCE(EXTRACT(EPOCH FROM now() -
+         * pg_last_xact_replay_timestamp()), 0)}. Without it the lag is not
+         * checked.
+         */
+        public Builder lagQuery(String lagQuery)
+        {
+            this.lagQuery = lagQuery;
+            return this;
+        }
+
+        /**
+         * A replica lagging more than this, or failing the lag query, gets
+         * no reads until its next lag check.
+         */
+        public Builder maxLag(Duration maxLag)
+        {
+            this.maxLag = maxLag;
+            return this;
+        }
+
+        public Builder lagProbeInterval(Duration lagProbeInterval)
+        {
+            this.lagProbeInterval = lagProbeInterval;
+            return this;
+        }
+
+        private RoutingConfig build()
+        {
+            if (selection == null) {
+                throw new IllegalArgumentException("Missing selection");
+            }
+            if (readYourWrites.isNegative()
+                || maxLag.isNegative()
+                || lagProbeInterval.isNegative()
+            ) {
+                throw new IllegalArgumentException("Negative duration");
+            }
+            return new RoutingConfig(this);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import fp.io.IO;
+import fp.util.Failure;
+import fp.util.ThrowingConsumer;
+
+/**
+ * Sends the reads to read replicas and everything else to the primary.
+ * The replicas are the services of named contexts, as in
+ *
+ * <pre>
+ * final RoutingRepository repository = RoutingRepository.of(
+ *     primary,
+ *     RoutingConfig.build(builder -&gt; builder
+ *         .selection(RoutingConfig.Selection.LEAST_OUTSTANDING)
+ *         .readYourWrites(Duration.ofSeconds(2))
+ *     ),
+ *     "replica1",
+ *     "replica2"
+ * );
+ *
+ * command
+ *     .provide(Repository.Service.class, repository)
+ *     .provide("replica1", Repository.Service.class, replica1)
+ *     .provide("replica2", Repository.Service.class, replica2);
+ * </pre>
+ *
+ * {@code use} takes a connection of the primary. The queries of it run on
+ * a connection of a replica, taken for the query, except inside a
+ * transaction, within the read-your-writes window after a write of the
+ * {@code use}, and when every replica lags behind; then they run on the
+ * primary connection. A replica found lagging by the probe of a query
+ * passes the query on to the next replica. Query publishers are not
+ * routed.
+ */
+public class RoutingRepository extends ForwardingService
+{
+    private final RoutingConfig config;
+
+    private final List<Replica> replicas;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Map<Connection, Integer> transactions = new ConcurrentHashMap<>();
+
+    private final Map<Connection, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private RoutingRepository(
+        final Repository.Service primary,
+        final RoutingConfig config,
+        final List<String> replicaNames
+    )
+    {
+        super(primary);
+        this.config = config;
+        this.replicas = new ArrayList<>();
+        for (String name : replicaNames) {
+            replicas.add(new Replica(name));
+        }
+    }
+
+    public static RoutingRepository of(
+        final Repository.Service primary,
+        final String... replicaNames
+    )
+    {
+        return of(primary, RoutingConfig.defaults(), replicaNames);
+    }
+
+    public static RoutingRepository of(
+        final Repository.Service primary,
+        final RoutingConfig config,
+        final String... replicaNames
+    )
+    {
+        return new RoutingRepository(primary, config, Arrays.asList(replicaNames));
+    }
+
+    @Override
+    public <T> IO<Failure, T> use(final IO<Failure, T> command)
+    {
+        return delegate.use(IO.bracket(
+            IO.access(Connection.class, connection -> connection),
+            connection -> IO.effectTotal(() -> lastWrites.remove(connection)),
+            connection -> command
+        ));
+    }
+
+    @Override
+    public <T> IO<Failure, T> querySingle(
+        final String sql,
+        final Extractor<T> createObject,
+        final Object... params
+    )
+    {
+        return read(service -> service.querySingle(sql, createObject, params));
+    }
+
+    @Override
+    public <T> IO<Failure, T> querySinglePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject
+    )
+    {
+        return read(service -> service.querySinglePrepared(sql, prepare, createObject));
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> query(
+        final String sql,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return read(service -> service.query(sql, createObject, fn, params));
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> queryPrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return read(service -> service.queryPrepared(sql, prepare, createObject, fn));
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> query(
+        final String sql,
+        final QueryOptions options,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return read(service -> service.query(sql, options, createObject, fn, params));
+    }
+
+    @Override
+    public <R, T> IO<Failure, R> queryPrepared(
+        final String sql,
+        final QueryOptions options,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn
+    )
+    {
+        return read(service ->
+            service.queryPrepared(sql, options, prepare, createObject, fn)
+        );
+    }
+
+    @Override
+    public IO<Failure, ColumnarResult> queryColumnar(
+        final String sql,
+        final Object... params
+    )
+    {
+        return read(service -> service.queryColumnar(sql, params));
+    }
+
+    @Override
+    public IO<Failure, Integer> update(final String sql, final Object... params)
+    {
+        return written(delegate.update(sql, params));
+    }
+
+    @Override
+    public IO<Failure, Integer> updatePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return written(delegate.updatePrepared(sql, prepare));
+    }
+
+    @Override
+    public IO<Failure, Long> execute(final String sql, final Object... params)
+    {
+        return written(delegate.execute(sql, params));
+    }
+
+    @Override
+    public IO<Failure, Long> executePrepared(
+        final String sql,
+        final ThrowingConsumer<PreparedStatement, SQLException> prepare
+    )
+    {
+        return written(delegate.executePrepared(sql, prepare));
+    }
+
+    @Override
+    public IO<Failure, Long> insertReturningKey(
+        final String sql,
+        final Object... params
+    )
+    {
+        return written(delegate.insertReturningKey(sql, params));
+    }
+
+    @Override
+    public <T> IO<Failure, List<Record>> insertReturningKeys(
+        final String sql,
+        final List<String> keyColumns,
+        final Iterable<T> rows,
+        final Binder<T> binder
+    )
+    {
+        return written(delegate.insertReturningKeys(sql, keyColumns, rows, binder));
+    }
+
+    @Override
+    public IO<Failure, Long> bulkInsert(
+        final String table,
+        final Stream<Record> records
+    )
+    {
+        return written(delegate.bulkInsert(table, records));
+    }
+
+    @Override
+    public IO<Failure, Integer> batchUpdate(final String... sqls)
+    {
+        return written(delegate.batchUpdate(sqls));
+    }
+
+    @Override
+    public <T> IO<Failure, int[]> batchUpdatePrepared(
+        final String sql,
+        final Iterable<T> rows,
+        final Binder<T> binder,
+        final int chunkSize
+    )
+    {
+        return written(delegate.batchUpdatePrepared(sql, rows, binder, chunkSize));
+    }
+
+    @Override
+    public <T> IO<Failure, T> transaction(final IO<Failure, T> dbCommand)
+    {
+        return IO.accessM(Connection.class, connection -> IO.bracket(
+            IO.effectTotal(() -> transactions.merge(connection, 1, Integer::sum)),
+            depth -> IO.effectTotal(() ->
+                transactions.computeIfPresent(connection, (c, open) ->
+                    open == 1 ? null : open - 1
+                )
+            ),
+            depth -> delegate.transaction(dbCommand)
+        ));
+    }
+
+    private <T> IO<Failure, T> written(final IO<Failure, T> write)
+    {
+        if (config.readYourWrites().isZero()) {
+            return write;
+        }
+        return IO.accessM(Connection.class, connection ->
+            write.peek(result -> lastWrites.put(connection, System.nanoTime()))
+        );
+    }
+
+    private <T> IO<Failure, T> read(
+        final Function<Repository.Service, IO<Failure, T>> query
+    )
+    {
+        return IO.accessM(Connection.class, connection ->
+            onPrimary(connection)
+                ? query.apply(delegate)
+                : onReplica(query, List.of())
+        );
+    }
+
+    private boolean onPrimary(final Connection connection)
+    {
+        if (transactions.containsKey(connection)) {
+            return true;
+        }
+        final Long lastWrite = lastWrites.get(connection);
+        return lastWrite != null
+            && System.nanoTime() - lastWrite < config.readYourWrites().toNanos();
+    }
+
+    /**
+     * The next replica that is not known to lag and not probed lagging by
+     * this query, or null if there is none.
+     */
+    private Replica select(final List<Replica> probedLagging)
+    {
+        final long now = System.nanoTime();
+        Replica selected = null;
+        final int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            final Replica replica = replicas.get(
+                Math.floorMod(start + i, replicas.size())
+            );
+            if (replica.lagging(now) || probedLagging.contains(replica)) {
+                continue;
+            }
+            if (config.selection() == RoutingConfig.Selection.ROUND_ROBIN) {
+                return replica;
+            }
+            if (selected == null
+                || replica.outstanding.get() < selected.outstanding.get()
+            ) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Runs the query on the selected replica, or on the primary if there
+     * is none. If the replica is due for a lag probe and lags, the query
+     * goes on to the next one.
+     */
+    private <T> IO<Failure, T> onReplica(
+        final Function<Repository.Service, IO<Failure, T>> query,
+        final List<Replica> probedLagging
+    )
+    {
+        final Replica replica = select(probedLagging);
+        if (replica == null) {
+            return query.apply(delegate);
+        }
+        final IO<Failure, T> run = IO.bracket(
+            IO.effectTotal(replica.outstanding::incrementAndGet),
+            outstanding -> IO.effectTotal(replica.outstanding::decrementAndGet),
+            outstanding -> IO.accessM(Repository.Service.class, service ->
+                service.use(query.apply(service))
+            ).useContext(replica.name, Repository.Service.class)
+        );
+        if (!replica.claimProbe(System.nanoTime())) {
+            return run;
+        }
+        return probe(replica).flatMap(lagging -> {
+            if (!lagging) {
+                return run;
+            }
+            final List<Replica> skipped = new ArrayList<>(probedLagging);
+            skipped.add(replica);
+            return onReplica(query, skipped);
+        });
+    }
+
+    private IO<Failure, Boolean> probe(final Replica replica)
+    {
+        final IO<Failure, Double> lag = IO.accessM(
+            Repository.Service.class,
+            service -> service.use(
+                service.querySingle(config.lagQuery(), rs -> rs.getDouble(1))
+            )
+        ).useContext(replica.name, Repository.Service.class);
+
+        return lag.either().map(seconds -> {
+            final boolean lagging = !seconds.isRight()
+                || seconds.right() * 1e9 > config.maxLag().toNanos();
+            replica.probed(System.nanoTime(), lagging);
+            return lagging;
+        });
+    }
+
+    private final class Replica
+    {
+        private final String name;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private final AtomicBoolean probing = new AtomicBoolean(false);
+
+        private volatile boolean checked = false;
+
+        private volatile long checkedAt = 0;
+
+        private volatile boolean lagging = false;
+
+        private Replica(final String name)
+        {
+            this.name = name;
+        }
+
+        private boolean lagging(final long now)
+        {
+            return lagging && fresh(now);
+        }
+
+        private boolean fresh(final long now)
+        {
+            return checked
+                && now - checkedAt < config.lagProbeInterval().toNanos();
+        }
+
+        /**
+         * Whether the caller has to check the lag; only one caller checks
+         * it at a time, the others use the last result.
+         */
+        private boolean claimProbe(final long now)
+        {
+            return config.lagQuery() != null
+                && !fresh(now)
+                && probing.compareAndSet(false, true);
+        }
+
+        private void probed(final long now, final boolean lagging)
+        {
+            this.lagging = lagging;
+            this.checkedAt = now;
+            this.checked = true;
+            probing.set(false);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package fp.jadobec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates an {@link Extractor} for the annotated record at compile time
+ * (see {@link RowProcessor}). The record components are read by their
+ * name, or by the name given in {@link Column}.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Row
+{
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.RECORD_COMPONENT)
+    @interface Column
+    {
+        String value();
+    }
+}
@@ -0,0 +1,237 @@
+package fp.jadobec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Writes a {@code <Record>Extractor} next to every {@link Row} record. The
+ * generated extractor looks up the column indexes once per result set and
+ * reads the columns with typed getters, without an intermediate Record.
+ * Nested records get the names of the enclosing classes as prefix, e.g.
+ * {@code Contact_UserRowExtractor} for {@code Contact.UserRow}.
+ */
+@SupportedAnnotationTypes("fp.jadobec.Row")
+public class RowProcessor extends AbstractProcessor
+{
+    private static final Map<TypeKind, String> primitiveGetters = Map.of(
+        TypeKind.BOOLEAN, "getBoolean",
+        TypeKind.BYTE, "getByte",
+        TypeKind.SHORT, "getShort",
+        TypeKind.INT, "getInt",
+        TypeKind.LONG, "getLong",
+        TypeKind.FLOAT, "getFloat",
+        TypeKind.DOUBLE, "getDouble"
+    );
+
+    private static final Map<String, String> typedGetters = Map.of(
+        "java.lang.String", "getString",
+        "java.math.BigDecimal", "getBigDecimal",
+        "java.sql.Date", "getDate",
+        "java.sql.Time", "getTime",
+        "java.sql.Timestamp", "getTimestamp"
+    );
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(
+        Set<? extends TypeElement> annotations,
+        RoundEnvironment roundEnv
+    )
+    {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Row.class)) {
+            if (element.getKind() != ElementKind.RECORD) {
+                error(element, "@Row can only be used on records");
+            } else if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                error(element, "@Row record must not be private");
+            } else {
+                generate((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(final TypeElement record)
+    {
+        final String packageName = packageOf(record).getQualifiedName().toString();
+        final String extractorName = extractorName(record);
+        final String recordName = record.getQualifiedName().toString();
+
+        final List<String> columns = new ArrayList<>();
+        final List<String> reads = new ArrayList<>();
+        for (RecordComponentElement component : record.getRecordComponents()) {
+            final Row.Column column = component.getAnnotation(Row.Column.class);
+            columns.add(column == null
+                ? component.getSimpleName().toString()
+                : column.value()
+            );
+
+            final String read = read(component.asType(), reads.size());
+            if (read == null) {
+                error(component, "Unsupported @Row component type: " + component.asType());
+                return;
+            }
+            reads.add(read);
+        }
+
+        final StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source
+            .append("import java.lang.ref.WeakReference;\n")
+            .append("import java.sql.ResultSet;\n")
+            .append("import java.sql.SQLException;\n\n")
+            .append("import javax.annotation.processing.Generated;\n\n")
+            .append("@Generated(\"fp.jadobec.RowProcessor\")\n")
+            .append("public final class ").append(extractorName)
+            .append("\n    implements fp.jadobec.Extractor<").append(recordName).append(">\n")
+            .append("{\n")
+            .append("    public static final ").append(extractorName)
+            .append(" INSTANCE = new ").append(extractorName).append("();\n\n")
+            .append("    private static final String[] COLUMNS = {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append("        \"").append(escape(columns.get(i))).append("\"")
+                .append(i + 1 < columns.size() ? ",\n" : "\n");
+        }
+        source
+            .append("    };\n\n")
+            .append("    private volatile Columns columns;\n\n")
+            .append("    private ").append(extractorName).append("()\n")
+            .append("    {\n")
+            .append("    }\n\n")
+            .append("    @Override\n")
+            .append("    public ").append(recordName)
+            .append(" extract(final ResultSet rs) throws SQLException\n")
+            .append("    {\n")
+            .append("        final int[] index = indexes(rs);\n")
+            .append("        return new ").append(recordName).append("(\n");
+        for (int i = 0; i < reads.size(); i++) {
+            source.append("            ").append(reads.get(i))
+                .append(i + 1 < reads.size() ? ",\n" : "\n");
+        }
+        source
+            .append("        );\n")
+            .append("    }\n\n")
+            .append("    private int[] indexes(final ResultSet rs) throws SQLException\n")
+            .append("    {\n")
+            .append("        final Columns last = columns;\n")
+            .append("        if (last != null && last.resultSet.get() == rs) {\n")
+            .append("            return last.indexes;\n")
+            .append("        }\n\n")
+            .append("        final int[] indexes = new int[COLUMNS.length];\n")
+            .append("        for (int i = 0; i < COLUMNS.length; i++) {\n")
+            .append("            indexes[i] = rs.findColumn(COLUMNS[i]);\n")
+            .append("        }\n")
+            .append("        columns = new Columns(rs, indexes);\n")
+            .append("        return indexes;\n")
+            .append("    }\n\n")
+            .append("    private static final class Columns\n")
+            .append("    {\n")
+            .append("        private final WeakReference<ResultSet> resultSet;\n\n")
+            .append("        private final int[] indexes;\n\n")
+            .append("        private Columns(final ResultSet resultSet, final int[] indexes)\n")
+            .append("        {\n")
+            .append("            this.resultSet = new WeakReference<>(resultSet);\n")
+            .append("            this.indexes = indexes;\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}\n");
+
+        final String fileName = packageName.isEmpty()
+            ? extractorName
+            : packageName + "." + extractorName;
+        try (Writer writer = processingEnv.getFiler()
+            .createSourceFile(fileName, record)
+            .openWriter())
+        {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            error(record, "Could not write " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    private String read(final TypeMirror type, final int index)
+    {
+        final String column = "index[" + index + "]";
+        final String primitiveGetter = primitiveGetters.get(type.getKind());
+        if (primitiveGetter != null) {
+            return "rs." + primitiveGetter + "(" + column + ")";
+        }
+        if (type.getKind() == TypeKind.ARRAY
+            && type.toString().equals("byte[]"))
+        {
+            return "rs.getBytes(" + column + ")";
+        }
+        if (type.getKind() != TypeKind.DECLARED
+            || !((DeclaredType) type).getTypeArguments().isEmpty())
+        {
+            return null;
+        }
+
+        final String typeName = processingEnv.getTypeUtils()
+            .erasure(type)
+            .toString();
+        final String typedGetter = typedGetters.get(typeName);
+        return typedGetter != null
+            ? "rs." + typedGetter + "(" + column + ")"
+            : "rs.getObject(" + column + ", " + typeName + ".class)";
+    }
+
+    private static String extractorName(final TypeElement record)
+    {
+        final StringBuilder name = new StringBuilder(record.getSimpleName());
+        Element enclosing = record.getEnclosingElement();
+        while (enclosing instanceof TypeElement type) {
+            name.insert(0, type.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.append("Extractor").toString();
+    }
+
+    private static PackageElement packageOf(final Element element)
+    {
+        Element enclosing = element;
+        while (!(enclosing instanceof PackageElement)) {
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return (PackageElement) enclosing;
+    }
+
+    private static String escape(final String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(final Element element, final String message)
+    {
+        processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.ERROR,
+            message,
+            element
+        );
+    }
+}
@@ -0,0 +1,216 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import fp.io.IO;
+import fp.util.Failure;
+
+/**
+ * Rows split across several databases by a key, e.g. the tenant id.
+ *
+ * <pre>
+ * final ShardedRepository&lt;Integer&gt; tenants = ShardedRepository.of(
+ *     Arrays.asList(shard0, shard1, shard2),
+ *     tenantId -&gt; tenantId
+ * );
+ *
+ * tenants.querySingle(tenantId, "SELECT name FROM tenant WHERE id = ?",
+ *     rs -&gt; rs.getString(1), tenantId);
+ * </pre>
+ *
+ * The shard of a key is the shard function modulo the number of shards.
+ * The calls with a key run on a connection of its shard, {@link #onShard}
+ * runs any command there. {@code queryAll} runs the query on every shard
+ * at once, by the {@code queryPublisher} of the shard, so on the threads
+ * the shard is configured to use. The rows of a shard come through a
+ * buffer of {@value #SHARD_BUFFER_ROWS} rows, and the stream callback
+ * takes them one shard after the other, or in the order of a comparator
+ * if the query sorts its rows the same way. The extractor of
+ * {@code queryAll} must not return null.
+ */
+public final class ShardedRepository<K> implements AutoCloseable
+{
+    private final List<Repository.Service> shards;
+
+    private static final int SHARD_BUFFER_ROWS = 256;
+
+    private final ToIntFunction<K> shardFunction;
+
+    private ShardedRepository(
+        final List<Repository.Service> shards,
+        final ToIntFunction<K> shardFunction
+    )
+    {
+        this.shards = shards;
+        this.shardFunction = shardFunction;
+    }
+
+    public static <K> ShardedRepository<K> of(
+        final List<? extends Repository.Service> shards,
+        final ToIntFunction<K> shardFunction
+    )
+    {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards");
+        }
+        return new ShardedRepository<>(List.copyOf(shards), shardFunction);
+    }
+
+    public int shardOf(final K key)
+    {
+        return Math.floorMod(shardFunction.applyAsInt(key), shards.size());
+    }
+
+    public int shardCount()
+    {
+        return shards.size();
+    }
+
+    /**
+     * Runs the command on a connection of the shard of the key. The
+     * {@code Repository} calls of the command go to that shard.
+     */
+    public <T> IO<Failure, T> onShard(final K key, final IO<Failure, T> command)
+    {
+        return onShard(shardOf(key), command);
+    }
+
+    public <T> IO<Failure, T> querySingle(
+        final K key,
+        final String sql,
+        final Extractor<T> createObject,
+        final Object... params
+    )
+    {
+        return onShard(key, Repository.querySingle(sql, createObject, params));
+    }
+
+    public <R, T> IO<Failure, R> query(
+        final K key,
+        final String sql,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return onShard(key, Repository.query(sql, createObject, fn, params));
+    }
+
+    public IO<Failure, Integer> update(
+        final K key,
+        final String sql,
+        final Object... params
+    )
+    {
+        return onShard(key, Repository.update(sql, params));
+    }
+
+    public <T> IO<Failure, T> transaction(
+        final K key,
+        final IO<Failure, T> dbCommand
+    )
+    {
+        return onShard(key, Repository.transaction(dbCommand));
+    }
+
+    /**
+     * Runs the query on every shard, and passes the rows of the shards to
+     * {@code fn} one shard after the other.
+     */
+    public <R, T> IO<Failure, R> queryAll(
+        final String sql,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return fanOut(sql, createObject, params, rows ->
+            fn.apply(rows.stream().flatMap(ShardedRepository::stream))
+        );
+    }
+
+    /**
+     * Runs the query on every shard, and passes the rows of the shards to
+     * {@code fn} merged in the order of the comparator. The query has to
+     * return its rows in the same order, e.g. by an {@code ORDER BY}.
+     */
+    public <R, T> IO<Failure, R> queryAll(
+        final String sql,
+        final Comparator<? super T> comparator,
+        final Extractor<T> createObject,
+        final Function<Stream<T>, IO<Failure, R>> fn,
+        final Object... params
+    )
+    {
+        return fanOut(sql, createObject, params, rows ->
+            fn.apply(stream(new MergeIterator<>(rows, comparator)))
+        );
+    }
+
+    /**
+     * The shards are not closed, they belong to the caller.
+     */
+    @Override
+    public void close()
+    {
+    }
+
+    private <T> IO<Failure, T> onShard(final int shard, final IO<Failure, T> command)
+    {
+        final Repository.Service service = shards.get(shard);
+        return service.use(command).provide(Repository.Service.class, service);
+    }
+
+    private <R, T> IO<Failure, R> fanOut(
+        final String sql,
+        final Extractor<T> createObject,
+        final Object[] params,
+        final Function<List<SubscriberIterator<T>>, IO<Failure, R>> fn
+    )
+    {
+        final Params prepare = Params.of(params.length);
+        for (Object param : params) {
+            prepare.add(param);
+        }
+
+        IO<Failure, List<Flow.Publisher<T>>> publishers = IO.succeed(List.of());
+        for (Repository.Service shard : shards) {
+            publishers = publishers.flatMap(previous ->
+                shard.queryPublisher(sql, prepare, createObject).map(publisher -> {
+                    final List<Flow.Publisher<T>> next = new ArrayList<>(previous);
+                    next.add(publisher);
+                    return next;
+                })
+            );
+        }
+
+        final IO<Failure, List<SubscriberIterator<T>>> subscribe = publishers.map(all ->
+            all.stream()
+                .map(publisher -> SubscriberIterator.subscribe(publisher, SHARD_BUFFER_ROWS))
+                .collect(Collectors.toList())
+        );
+        return IO.bracket(
+            subscribe,
+            rows -> IO.effect(() -> rows.forEach(SubscriberIterator::close)),
+            fn
+        ).blocking();
+    }
+
+    private static <T> Stream<T> stream(final Iterator<T> rows)
+    {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(rows, 0),
+            false
+        );
+    }
+}
@@ -0,0 +1,207 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU cache of the idle prepared statements of one connection. A statement
+ * is taken out of the cache while it is in use, so the same SQL can be
+ * executed again (e.g. in a nested query) before the first one is released.
+ */
+final class StatementCache implements AutoCloseable
+{
+    private final int maxSize;
+
+    private final Counters counters;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+
+    StatementCache(final int maxSize, final Counters counters)
+    {
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Key, PreparedStatement> eldest
+            )
+            {
+                if (size() > StatementCache.this.maxSize) {
+                    counters.evictions.increment();
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    PreparedStatement prepare(
+        final Connection connection,
+        final Key key
+    ) throws SQLException
+    {
+        final PreparedStatement cached;
+        lock.lock();
+        try {
+            cached = statements.remove(key);
+        } finally {
+            lock.unlock();
+        }
+
+        if (cached != null && !cached.isClosed()) {
+            counters.hits.increment();
+            return cached;
+        }
+        counters.misses.increment();
+        return key.prepare(connection);
+    }
+
+    /**
+     * Puts the statement back with its parameters cleared and its hints
+     * reset to the defaults of {@link QueryOptions}, so the next user does
+     * not get the fetch size or the row limit of the previous query.
+     */
+    void release(final Key key, final PreparedStatement statement)
+        throws SQLException
+    {
+        if (statement.isClosed()) {
+            return;
+        }
+        statement.clearParameters();
+        statement.setFetchSize(0);
+        statement.setMaxRows(0);
+        if (key.resultSetType() != ResultSet.TYPE_FORWARD_ONLY) {
+            statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+        }
+
+        final PreparedStatement replaced;
+        lock.lock();
+        try {
+            replaced = statements.putIfAbsent(key, statement);
+        } finally {
+            lock.unlock();
+        }
+        if (replaced != null) {
+            statement.close();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        final List<PreparedStatement> closing;
+        lock.lock();
+        try {
+            closing = new ArrayList<>(statements.values());
+            statements.clear();
+        } finally {
+            lock.unlock();
+        }
+        closing.forEach(StatementCache::closeQuietly);
+    }
+
+    private static void closeQuietly(final PreparedStatement statement)
+    {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * The SQL text together with the flags the statement was prepared with.
+     */
+    record Key(
+        String sql,
+        int autoGeneratedKeys,
+        int resultSetType,
+        int resultSetConcurrency,
+        List<String> keyColumns
+    )
+    {
+        static Key of(final String sql)
+        {
+            return new Key(
+                sql,
+                Statement.NO_GENERATED_KEYS,
+                ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY,
+                List.of()
+            );
+        }
+
+        static Key withGeneratedKeys(final String sql)
+        {
+            return new Key(
+                sql,
+                Statement.RETURN_GENERATED_KEYS,
+                ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY,
+                List.of()
+            );
+        }
+
+        /**
+         * Returns the given columns as generated keys, or every generated
+         * column if there are none.
+         */
+        static Key withKeyColumns(final String sql, final List<String> keyColumns)
+        {
+            return new Key(
+                sql,
+                Statement.RETURN_GENERATED_KEYS,
+                ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY,
+                List.copyOf(keyColumns)
+            );
+        }
+
+        PreparedStatement prepare(final Connection connection) throws SQLException
+        {
+            if (!keyColumns.isEmpty()) {
+                return connection.prepareStatement(
+                    sql,
+                    keyColumns.toArray(new String[0])
+                );
+            }
+            if (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) {
+                return connection.prepareStatement(sql, autoGeneratedKeys);
+            }
+            return connection.prepareStatement(
+                sql,
+                resultSetType,
+                resultSetConcurrency
+            );
+        }
+    }
+
+    static final class Counters
+    {
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder evictions = new LongAdder();
+
+        StatementCacheStats stats()
+        {
+            return new StatementCacheStats(
+                hits.sum(),
+                misses.sum(),
+                evictions.sum()
+            );
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package fp.jadobec;
+
+public record StatementCacheStats(long hits, long misses, long evictions)
+{
+    public double hitRatio()
+    {
+        final long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,86 @@
+package fp.jadobec;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cancels the running statements of the connections that are past their
+ * deadline or whose thread was interrupted, e.g. because the fiber of the
+ * command was interrupted. A blocking JDBC call does not react to the
+ * interrupt of its thread, and drivers check the query timeout in whole
+ * seconds, if at all.
+ * <p>
+ * The checking thread is started by the first statement and stopped by
+ * {@link #close()}.
+ */
+final class StatementWatchdog implements AutoCloseable
+{
+    static final long PERIOD_MILLIS = 50;
+
+    private final Collection<ConnectionState> states;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean started = false;
+
+    private boolean closed = false;
+
+    StatementWatchdog(final Collection<ConnectionState> states)
+    {
+        this.states = states;
+    }
+
+    void start()
+    {
+        if (started) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!started && !closed) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread =
+                        new Thread(runnable, "jadobec-statement-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                scheduler.scheduleWithFixedDelay(
+                    this::check,
+                    PERIOD_MILLIS,
+                    PERIOD_MILLIS,
+                    TimeUnit.MILLISECONDS
+                );
+                started = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void check()
+    {
+        final long now = System.nanoTime();
+        for (ConnectionState state : states) {
+            state.cancelOverdue(now);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try {
+            closed = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package fp.jadobec;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Flow;
+
+/**
+ * Subscribes to a publisher and iterates its elements. The subscriber
+ * requests at most {@code bufferSize} elements ahead of the consumer, so
+ * the publisher is never more than the buffer ahead of the iterator.
+ * <p>
+ * A failure of the publisher is thrown by {@link #hasNext()} after the
+ * elements before it. {@link #close()} cancels the subscription, e.g. of
+ * an iterator not read to its end.
+ */
+final class SubscriberIterator<T> implements Iterator<T>, AutoCloseable, Flow.Subscriber<T>
+{
+    private static final Object END = new Object();
+
+    private final int bufferSize;
+
+    private final ArrayBlockingQueue<Object> buffer;
+
+    private volatile Flow.Subscription subscription = null;
+
+    private int consumed = 0;
+
+    private Object next = null;
+
+    SubscriberIterator(final int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize + 1);
+    }
+
+    static <T> SubscriberIterator<T> subscribe(
+        final Flow.Publisher<T> publisher,
+        final int bufferSize
+    )
+    {
+        final SubscriberIterator<T> iterator = new SubscriberIterator<>(bufferSize);
+        publisher.subscribe(iterator);
+        return iterator;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription)
+    {
+        this.subscription = subscription;
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(final T item)
+    {
+        buffer.add(item);
+    }
+
+    @Override
+    public void onError(final Throwable throwable)
+    {
+        buffer.add(new Failed(throwable));
+    }
+
+    @Override
+    public void onComplete()
+    {
+        buffer.add(END);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (next == null) {
+            try {
+                next = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (next instanceof Failed failed) {
+            throw failed.exception instanceof RuntimeException e
+                ? e
+                : new RuntimeException(failed.exception);
+        }
+        return next != END;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T element = (T) next;
+        next = null;
+        if (++consumed >= (bufferSize + 1) / 2) {
+            subscription.request(consumed);
+            consumed = 0;
+        }
+        return element;
+    }
+
+    @Override
+    public void close()
+    {
+        if (subscription != null && next != END) {
+            subscription.cancel();
+        }
+    }
+
+    private static final class Failed
+    {
+        private final Throwable exception;
+
+        private Failed(final Throwable exception)
+        {
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkInsertTest
+{
+    private final Record person = Record.build(builder -> builder
+        .field("id", 1)
+        .field("name", "John Doe")
+        .field("age", 32)
+    );
+
+    private final BulkInsert.Identifiers lowerCase =
+        new BulkInsert.Identifiers("\"", false, true);
+
+    @Test
+    public void testInsertSql()
+    {
+        assertEquals(
+            "INSERT INTO \"person\" (\"id\", \"name\", \"age\") "
+                + "VALUES (?, ?, ?), (?, ?, ?)",
+            BulkInsert.of("person", person, lowerCase).insertSql(2)
+        );
+    }
+
+    @Test
+    public void testQuotedIdentifiers()
+    {
+        assertEquals("\"public\".\"person\"", lowerCase.table("Public.Person"));
+        assertEquals("\"First Name\"", lowerCase.quote("First Name"));
+        assertEquals("\"a\"\"b\"", lowerCase.quote("a\"b"));
+        assertEquals(
+            "\"person\"\" (id) VALUES (1); DROP TABLE x; --\"",
+            lowerCase.table("person\" (id) VALUES (1); DROP TABLE x; --")
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new BulkInsert.Identifiers("", false, false)
+                .table("person; DROP TABLE x")
+        );
+        assertEquals(
+            "`order`",
+            new BulkInsert.Identifiers("`", false, false).quote("order")
+        );
+    }
+
+    @Test
+    public void testIdentifiersOfDatabase() throws Exception
+    {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:")) {
+            connection.createStatement().execute(
+                "CREATE TABLE person(id INT, name VARCHAR(30), \"ORDER\" INT)"
+            );
+            final Record row = Record.build(builder -> builder
+                .field("id", 1)
+                .field("name", "John Doe")
+                .field("order", 2)
+            );
+            final BulkInsert insert = BulkInsert.of(
+                "person",
+                row,
+                BulkInsert.Identifiers.of(connection)
+            );
+            try (PreparedStatement ps = connection.prepareStatement(
+                insert.insertSql(1)
+            )) {
+                insert.bind(ps, List.of(row));
+                assertEquals(1, ps.executeUpdate());
+            }
+            final BulkInsert hostile = BulkInsert.of(
+                "person\" (id) VALUES (1); DROP TABLE person; --",
+                row,
+                BulkInsert.Identifiers.of(connection)
+            );
+            assertThrows(
+                SQLException.class,
+                () -> connection.prepareStatement(hostile.insertSql(1))
+            );
+            try (ResultSet rs = connection.createStatement().executeQuery(
+                "SELECT name, \"ORDER\" FROM person"
+            )) {
+                rs.next();
+                assertEquals("John Doe", rs.getString(1));
+                assertEquals(2, rs.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    public void testCsvValues()
+    {
+        assertEquals("\\x00ff10", BulkInsert.csvValue(new byte[] {0, -1, 16}));
+        assertEquals(
+            "2024-02-29T13:45:30.123456789",
+            BulkInsert.csvValue(Timestamp.valueOf(
+                LocalDateTime.of(2024, 2, 29, 13, 45, 30, 123_456_789)
+            ))
+        );
+        assertEquals(
+            "2024-02-29",
+            BulkInsert.csvValue(java.sql.Date.valueOf("2024-02-29"))
+        );
+        assertEquals(
+            "1970-01-01T00:00:00Z",
+            BulkInsert.csvValue(new java.util.Date(0))
+        );
+        assertEquals(
+            "2024-02-29T13:45+01:00",
+            BulkInsert.csvValue(ZonedDateTime.of(
+                2024, 2, 29, 13, 45, 0, 0, ZoneOffset.ofHours(1)
+            ))
+        );
+        assertEquals("Jane \"J\" Doe", BulkInsert.csvValue("Jane \"J\" Doe"));
+    }
+
+    @Test
+    public void testChunkSizes()
+    {
+        final BulkInsert insert = BulkInsert.of("person", person, lowerCase);
+
+        assertEquals(1024, insert.rowsPerStatement());
+        assertEquals(1024, insert.chunkSize(5000));
+        assertEquals(8, insert.chunkSize(13));
+        assertEquals(4, insert.chunkSize(5));
+        assertEquals(1, insert.chunkSize(1));
+    }
+
+    @Test
+    public void testParameterLimit()
+    {
+        final Record wide = Record.build(builder -> {
+            for (int i = 0; i < 100; i++) {
+                builder.field("c" + i, i);
+            }
+        });
+
+        assertEquals(256, BulkInsert.of("wide", wide, lowerCase).rowsPerStatement());
+    }
+}
@@ -0,0 +1,223 @@
+package fp.jadobec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachedRepositoryTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    private static final Extractor<Integer> intValue = rs -> rs.getInt(1);
+
+    @Test
+    public void testReadTables()
+    {
+        assertEquals(
+            Set.of("person", "address", "orders", "city"),
+            QueryCache.readTables(
+                "SELECT p.name FROM public.person p, city c "
+                    + "JOIN \"Address\" a ON a.person_id = p.id "
+                    + "WHERE p.id IN (SELECT person_id FROM orders)"
+            )
+        );
+    }
+
+    @Test
+    public void testLockingQueries()
+    {
+        assertTrue(QueryCache.isLocking("SELECT age FROM person WHERE id = ? FOR UPDATE"));
+        assertTrue(QueryCache.isLocking("SELECT age FROM person for no key update"));
+        assertTrue(QueryCache.isLocking("SELECT age FROM person FOR SHARE NOWAIT"));
+        assertTrue(QueryCache.isLocking("SELECT age FROM person LOCK IN SHARE MODE"));
+        assertFalse(QueryCache.isLocking("SELECT age, info FROM person WHERE id = ?"));
+    }
+
+    @Test
+    public void testInvalidateOnWrite()
+    {
+        final QueryCache cache = new QueryCache(CacheConfig.defaults());
+        final QueryCache.Key person = key("SELECT name FROM person WHERE id = ?", 1);
+        final QueryCache.Key address = key("SELECT city FROM address WHERE id = ?", 1);
+
+        cache.put(person, cache.lookup(person), "John Doe", Long.MAX_VALUE / 2);
+        cache.put(address, cache.lookup(address), "Budapest", Long.MAX_VALUE / 2);
+        cache.written("UPDATE Person SET age = 33 WHERE id = 1");
+
+        assertFalse(cache.lookup(person).hit());
+        assertTrue(cache.lookup(address).hit());
+        assertEquals(
+            new CacheStats(1, 3, 0, 1, 1, 1),
+            cache.stats()
+        );
+    }
+
+    @Test
+    public void testStaleResultIsNotStored()
+    {
+        final QueryCache cache = new QueryCache(CacheConfig.defaults());
+        final QueryCache.Key person = key("SELECT name FROM person WHERE id = ?", 1);
+
+        final QueryCache.Lookup lookup = cache.lookup(person);
+        cache.written("DELETE FROM person WHERE id = 1");
+        cache.put(person, lookup, "John Doe", Long.MAX_VALUE / 2);
+
+        assertFalse(cache.lookup(person).hit());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        final QueryCache cache = new QueryCache(
+            CacheConfig.build(builder -> builder.maximumWeight(3))
+        );
+        final QueryCache.Key key1 = key("SELECT ?", 1);
+        final QueryCache.Key key2 = key("SELECT ?", 2);
+        final QueryCache.Key key3 = key("SELECT ?", 3);
+
+        cache.put(key1, cache.lookup(key1), List.of(1), Long.MAX_VALUE / 2);
+        cache.put(key2, cache.lookup(key2), List.of(2, 2), Long.MAX_VALUE / 2);
+        assertTrue(cache.lookup(key1).hit());
+        cache.put(key3, cache.lookup(key3), List.of(3), Long.MAX_VALUE / 2);
+
+        assertTrue(cache.lookup(key1).hit());
+        assertFalse(cache.lookup(key2).hit());
+        assertTrue(cache.lookup(key3).hit());
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    public void testCachedRepository()
+    {
+        final Either<Failure, CachedRepository> repositoryOrFailure =
+            Repository.Live.create(
+                "org.h2.jdbcx.JdbcDataSource",
+                "SELECT 1",
+                Tuple2.of("URL", "jdbc:h2:mem:")
+            ).map(repository -> CachedRepository.of(
+                repository,
+                CacheConfig.build(builder -> builder.ttl(sql ->
+                    sql.contains("COUNT") ? Duration.ZERO : Duration.ofMinutes(1)
+                ))
+            ));
+        assertTrue(repositoryOrFailure.isRight(), repositoryOrFailure.toString());
+        final CachedRepository repository = repositoryOrFailure.right();
+
+        final Either<Failure, Integer> ageOrFailure =
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.batchUpdate(
+                        "CREATE TABLE person(id INT, age INT)",
+                        "INSERT INTO person VALUES(1, 32)"
+                    ).flatMap(i ->
+                        selectAge()
+                    ).flatMap(age ->
+                        selectAge()
+                    ).flatMap(age ->
+                        Repository.querySingle(
+                            "SELECT COUNT(*) FROM person",
+                            intValue
+                        )
+                    ).flatMap(count ->
+                        Repository.update(
+                            "UPDATE person SET age = ? WHERE id = ?",
+                            33,
+                            1
+                        )
+                    ).flatMap(count ->
+                        selectAge()
+                    )
+                ).provide(Repository.Service.class, repository)
+            ));
+
+        assertTrue(ageOrFailure.isRight(), ageOrFailure.toString());
+        assertEquals(33, ageOrFailure.right());
+        assertEquals(
+            new CacheStats(1, 2, 0, 1, 1, 1),
+            repository.cacheStats()
+        );
+    }
+
+    @Test
+    public void testNotCachedInTransaction()
+    {
+        final Either<Failure, CachedRepository> repositoryOrFailure =
+            Repository.Live.create(
+                "org.h2.jdbcx.JdbcDataSource",
+                "SELECT 1",
+                Tuple2.of("URL", "jdbc:h2:mem:")
+            ).map(CachedRepository::of);
+        assertTrue(repositoryOrFailure.isRight(), repositoryOrFailure.toString());
+        final CachedRepository repository = repositoryOrFailure.right();
+
+        final Either<Failure, Integer> ageOrFailure =
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.batchUpdate(
+                        "CREATE TABLE person(id INT, age INT)",
+                        "INSERT INTO person VALUES(1, 32)"
+                    ).flatMap(i ->
+                        Repository.transaction(
+                            Repository.update(
+                                "UPDATE person SET age = ? WHERE id = ?",
+                                33,
+                                1
+                            ).flatMap(count ->
+                                selectAge()
+                            ).flatMap(age ->
+                                selectAge()
+                            )
+                        )
+                    ).flatMap(age ->
+                        selectAge()
+                    )
+                ).provide(Repository.Service.class, repository)
+            ));
+
+        assertTrue(ageOrFailure.isRight(), ageOrFailure.toString());
+        assertEquals(33, ageOrFailure.right());
+        assertEquals(
+            new CacheStats(0, 1, 0, 0, 1, 1),
+            repository.cacheStats()
+        );
+    }
+
+    private static IO<Failure, Integer> selectAge()
+    {
+        return Repository.querySingle(
+            "SELECT age FROM person WHERE id = ?",
+            intValue,
+            1
+        );
+    }
+
+    private static QueryCache.Key key(final String sql, final Object param)
+    {
+        return new QueryCache.Key(sql, List.of(param), intValue);
+    }
+}
@@ -0,0 +1,152 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionPoolTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    @Test
+    public void testReuseConnection() throws SQLException
+    {
+        try (ConnectionPool pool = createPool(PoolConfig.defaults())) {
+            final Connection connection = pool.acquire();
+            pool.release(connection);
+
+            assertSame(connection, pool.acquire());
+            assertEquals(1, pool.stats().total());
+            assertEquals(1, pool.stats().active());
+            assertEquals(0, pool.stats().idle());
+        }
+    }
+
+    @Test
+    public void testAcquireTimeout() throws SQLException
+    {
+        final PoolConfig config = PoolConfig.build(builder -> builder
+            .maxSize(2)
+            .acquireTimeout(Duration.ofMillis(50))
+        );
+
+        try (ConnectionPool pool = createPool(config)) {
+            pool.acquire();
+            pool.acquire();
+
+            assertThrows(SQLTransientConnectionException.class, pool::acquire);
+
+            final PoolStats stats = pool.stats();
+            assertEquals(2, stats.active());
+            assertEquals(2, stats.acquired());
+            assertEquals(1, stats.timeouts());
+            assertEquals(2, Arrays.stream(stats.acquireWaitHistogram()).sum());
+        }
+    }
+
+    @Test
+    public void testDiscardClosedConnection() throws SQLException
+    {
+        final PoolConfig config = PoolConfig.build(builder -> builder
+            .minSize(1)
+            .maxSize(1)
+        );
+
+        try (ConnectionPool pool = createPool(config)) {
+            assertEquals(1, pool.stats().idle());
+
+            final Connection connection = pool.acquire();
+            connection.close();
+            pool.release(connection);
+
+            assertEquals(0, pool.stats().total());
+            assertNotSame(connection, pool.acquire());
+        }
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception
+    {
+        final PoolConfig config = PoolConfig.build(builder -> builder
+            .maxLifetime(Duration.ofMillis(20))
+        );
+
+        try (ConnectionPool pool = createPool(config)) {
+            final Connection connection = pool.acquire();
+            Thread.sleep(40);
+            pool.release(connection);
+
+            assertEquals(0, pool.stats().total());
+        }
+    }
+
+    @Test
+    public void testLiveWithPool()
+    {
+        final PoolConfig config = PoolConfig.build(builder -> builder
+            .minSize(1)
+            .maxSize(4)
+        );
+
+        final Either<Failure, PoolStats> statsOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            config,
+            Tuple2.of("URL", "jdbc:h2:mem:pooled;DB_CLOSE_DELAY=-1")
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.querySingle("SELECT 1", rs -> rs.getInt(1))
+                ).flatMap(i ->
+                    Repository.use(
+                        Repository.querySingle("SELECT 2", rs -> rs.getInt(1))
+                    )
+                ).flatMap(i ->
+                    Repository.poolStats()
+                ).provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(statsOrFailure.isRight(), statsOrFailure.toString());
+        assertEquals(0, statsOrFailure.right().active());
+        assertEquals(1, statsOrFailure.right().total());
+    }
+
+    private static ConnectionPool createPool(
+        final PoolConfig config
+    ) throws SQLException
+    {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:");
+        return ConnectionPool.create(dataSource::getConnection, config);
+    }
+}
@@ -1,5 +1,6 @@
 package fp.jadobec;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
@@ -125,6 +126,153 @@ public class ContactTest
         );
     }
 
+    @Test
+    public void testParallelContacts()
+    {
+        final List<Either<Failure, User>> expectedUsers = Arrays.asList(
+            Right.of(new TempUser(3, "Jake Doe")),
+            Right.of(new ValidatedUser(2, "Jane Doe",
+                new ValidatedEmail("jane.doe@doe.com"))),
+            Right.of(new ValidatedUser(1, "John Doe",
+                new ValidatedEmail("john@doe.com")))
+        );
+
+        // The mappers run on their own connections, they need a shared database
+        checkDbCommand(
+            "jdbc:h2:mem:parallelContacts;MODE=MySQL;NON_KEYWORDS=USER",
+            createAndFill.flatMap(v ->
+                Repository.mapStreamEitherPar(
+                    queryUsers(),
+                    ContactTest::addEmails,
+                    2
+                )
+            ).peek(users ->
+                assertArrayEquals(expectedUsers.toArray(), users.toArray())
+            )
+        );
+    }
+
+    @Test
+    public void testParallelPassedEnvironment()
+    {
+        final IO<Failure, List<Either<Failure, String>>> markers =
+            createAndFill.flatMap(v ->
+                Repository.mapStreamEitherPar(
+                    queryUsers(),
+                    user -> IO.access(String.class, marker -> marker),
+                    2,
+                    String.class
+                )
+            ).flatMap(Repository::mapToList);
+
+        checkDbCommand(
+            "jdbc:h2:mem:parallelEnvironment;MODE=MySQL;NON_KEYWORDS=USER",
+            markers.provide(String.class, "passed").peek(results ->
+                assertEquals(
+                    Arrays.asList(
+                        Right.of("passed"),
+                        Right.of("passed"),
+                        Right.of("passed")
+                    ),
+                    results
+                )
+            )
+        );
+    }
+
+    @Test
+    public void testBatchLoadedContacts()
+    {
+        final List<User> expectedUsers = Arrays.asList(
+            new TempUser(3, "Jake Doe"),
+            new ValidatedUser(2, "Jane Doe",
+                new ValidatedEmail("jane.doe@doe.com")),
+            new ValidatedUser(1, "John Doe",
+                new ValidatedEmail("john@doe.com"))
+        );
+        final BatchLoader<Integer, Email> emails = BatchLoader.of(
+            "SELECT id_user, email, validated " +
+                "FROM email " +
+                "WHERE id_user IN ({keys}) AND email LIKE '%@%' " +
+                "ORDER BY importance desc, validated desc",
+            rs -> rs.getInt(1),
+            rs -> Email.of(rs.getString(2), rs.getBoolean(3))
+        ).withBatchSize(2);
+
+        checkDbCommand(
+            createAndFill.flatMap(v ->
+                queryUsers()
+            ).map(users ->
+                users.map(Either::right).toList()
+            ).flatMap(users ->
+                emails.loadMany(
+                    users.stream().map(User::id).toList()
+                ).map(emailsByUser -> users.stream()
+                    .map(user -> StreamUtil.reduce(user, User::addEmail)
+                        .apply(emailsByUser.get(user.id()).stream())
+                    )
+                    .toList()
+                )
+            ).peek(users ->
+                assertEquals(expectedUsers, users)
+            )
+        );
+    }
+
+    @Test
+    public void testBatchLoaderDefect()
+    {
+        final BatchLoader<Integer, Email> emails = BatchLoader.of(
+            "SELECT id_user, email, validated FROM email WHERE id_user IN ({keys})",
+            rs -> rs.getInt(1),
+            rs -> {
+                throw new IllegalStateException("Broken extractor");
+            }
+        );
+
+        checkDbCommand(
+            createAndFill.flatMap(v ->
+                succeeded(emails.load(1))
+            ).flatMap(first ->
+                succeeded(emails.load(1)).map(second -> List.of(first, second))
+            ).peek(results ->
+                assertEquals(List.of(false, false), results)
+            )
+        );
+    }
+
+    @Test
+    public void testBatchLoaderSingleCaller()
+    {
+        final BatchLoader<Integer, Email> emails = BatchLoader.of(
+            "SELECT id_user, email, validated FROM email WHERE id_user IN ({keys})",
+            rs -> rs.getInt(1),
+            rs -> Email.of(rs.getString(2), rs.getBoolean(3))
+        ).withWindow(Duration.ofSeconds(10));
+        final long start = System.nanoTime();
+
+        checkDbCommand(
+            createAndFill.flatMap(v ->
+                emails.load(1)
+            ).flatMap(first ->
+                emails.load(2)
+            ).peek(second ->
+                assertTrue(
+                    System.nanoTime() - start < Duration.ofSeconds(5).toNanos(),
+                    "A single caller waited for the window"
+                )
+            )
+        );
+    }
+
+    private static <T> IO<Failure, Boolean> succeeded(final IO<Failure, T> io)
+    {
+        return io.foldCauseM(
+            cause -> IO.succeed(false),
+            value -> IO.succeed(true)
+        );
+    }
+
     @Test
     public void testPartialLoad()
     {
@@ -157,12 +305,14 @@ public class ContactTest
                 insertData()
             ));
 
-    private static Either<Failure, Repository.Live> createRepository()
+    private static Either<Failure, Repository.Live> createRepository(
+        final String url
+    )
     {
         return Repository.Live.create(
             "org.h2.jdbcx.JdbcDataSource",
             "SELECT 1",
-            Tuple2.of("URL", "jdbc:h2:mem:;MODE=MySQL;NON_KEYWORDS=USER")
+            Tuple2.of("URL", url)
         );
     }
 
@@ -285,7 +435,15 @@ public class ContactTest
         final IO<Failure, T> testDbCommand
     )
     {
-        final Either<Failure, T> repositoryOrFailure = createRepository()
+        checkDbCommand("jdbc:h2:mem:;MODE=MySQL;NON_KEYWORDS=USER", testDbCommand);
+    }
+
+    private static <T> void checkDbCommand(
+        final String url,
+        final IO<Failure, T> testDbCommand
+    )
+    {
+        final Either<Failure, T> repositoryOrFailure = createRepository(url)
             .flatMap(repository ->
                 Cause.resultFlatten(defaultRuntime.unsafeRun(
                     Repository.use(testDbCommand)
@@ -0,0 +1,112 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeysetIteratorTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    final static ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPages()
+    {
+        checkPages(25, 3);
+        checkPages(20, 3);
+        checkPages(0, 1);
+    }
+
+    @Test
+    public void testStreamByKeyset()
+    {
+        final Either<Failure, List<Integer>> idsOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            Tuple2.of("URL", "jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1")
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.batchUpdate(
+                        "CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(30))",
+                        "INSERT INTO item SELECT x, 'Item ' || x"
+                            + " FROM SYSTEM_RANGE(1, 105)"
+                    )
+                ).flatMap(count ->
+                    Repository.streamByKeyset(
+                        "SELECT id FROM item WHERE id > ? ORDER BY id LIMIT ?",
+                        0,
+                        Function.identity(),
+                        rs -> rs.getInt(1),
+                        10,
+                        Repository::mapToList
+                    )
+                ).provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(idsOrFailure.isRight(), idsOrFailure.toString());
+        assertEquals(
+            IntStream.rangeClosed(1, 105).boxed().collect(Collectors.toList()),
+            idsOrFailure.right()
+        );
+    }
+
+    private static void checkPages(final int rowCount, final int expectedPages)
+    {
+        final AtomicInteger pages = new AtomicInteger();
+        final KeysetIterator<Integer, Integer> rows = new KeysetIterator<>(
+            -1,
+            key -> {
+                pages.incrementAndGet();
+                return IntStream.range(key + 1, Math.min(key + 11, rowCount))
+                    .boxed()
+                    .collect(Collectors.toList());
+            },
+            row -> row,
+            10,
+            executor
+        );
+
+        final List<Integer> read = new ArrayList<>();
+        rows.forEachRemaining(read::add);
+        rows.close();
+
+        assertEquals(
+            IntStream.range(0, rowCount).boxed().collect(Collectors.toList()),
+            read
+        );
+        assertEquals(expectedPages, pages.get());
+    }
+}
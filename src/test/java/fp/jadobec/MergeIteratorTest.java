@@ -0,0 +1,55 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MergeIteratorTest
+{
+    @Test
+    public void testMerge()
+    {
+        final List<Iterator<Integer>> sources = Arrays.asList(
+            Arrays.asList(1, 4, 7, 9).iterator(),
+            Collections.<Integer>emptyIterator(),
+            Arrays.asList(2, 3, 8).iterator(),
+            Arrays.asList(4, 5).iterator()
+        );
+
+        assertEquals(
+            Arrays.asList(1, 2, 3, 4, 4, 5, 7, 8, 9),
+            collect(new MergeIterator<>(sources, Comparator.naturalOrder()))
+        );
+    }
+
+    @Test
+    public void testStableForEqualElements()
+    {
+        final List<Iterator<String>> sources = Arrays.asList(
+            Arrays.asList("b1", "c1").iterator(),
+            Arrays.asList("a2", "b2").iterator()
+        );
+
+        assertEquals(
+            Arrays.asList("a2", "b1", "b2", "c1"),
+            collect(new MergeIterator<>(
+                sources,
+                Comparator.comparing(value -> value.charAt(0))
+            ))
+        );
+    }
+
+    private static <T> List<T> collect(final Iterator<T> iterator)
+    {
+        final List<T> values = new ArrayList<>();
+        iterator.forEachRemaining(values::add);
+        return values;
+    }
+}
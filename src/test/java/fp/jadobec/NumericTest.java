@@ -119,6 +119,39 @@ public class NumericTest
         );
     }
 
+    @Test
+    public void testColumnar()
+    {
+        checkDbCommand(
+            Repository.queryColumnar(
+                "SELECT x, CASE WHEN x > ? THEN y END AS y " +
+                    "FROM data ORDER BY id_data",
+                0
+            ).peek(result -> {
+                assertEquals(183, result.rowCount());
+                final ColumnarResult.DoubleColumn x = result.doubleColumn("x");
+                assertEquals(0.0, x.sum(), 1e-9);
+                assertEquals(-3.0, x.min().getAsDouble(), 1e-9);
+                assertEquals(3.0, x.max().getAsDouble(), 1e-9);
+                final ColumnarResult.DoubleColumn y = result.doubleColumn("y");
+                assertEquals(93, y.nullCount());
+                assertEquals(90, y.stream().count());
+                assertTrue(y.isNull(0));
+            }).flatMap(result -> Repository.queryColumnar(
+                "SELECT MIN(id_label) AS id_label, COUNT(*) AS c " +
+                    "FROM data GROUP BY x"
+            )).peek(result -> {
+                assertEquals(61, result.rowCount());
+                assertEquals(61, result.intColumn("id_label").sum());
+                assertEquals(183, result.longColumn("c").sum());
+                assertEquals(
+                    3.0,
+                    result.column("c").asDoubleStream().average().getAsDouble()
+                );
+            })
+        );
+    }
+
     private static Record calcReciprocal(final Record record)
     {
         return record.copy(builder -> builder
@@ -0,0 +1,105 @@
+package fp.jadobec;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+/**
+ * Loads rows into a file-backed H2 database with a growing number of
+ * partitions.
+ *
+ * <pre>
+ * sbt "Test/runMain fp.jadobec.ParallelLoadBenchmark 200000 1000 8"
+ * </pre>
+ *
+ * The arguments are the number of rows, the rows per commit and the
+ * largest number of partitions.
+ */
+public class ParallelLoadBenchmark
+{
+    public static void main(final String[] args)
+    {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int commitEvery = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        final int maxPartitions = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        final DefaultPlatform platform = new DefaultPlatform();
+        final Runtime runtime = new DefaultRuntime(null, platform);
+        try {
+            for (int partitions = 1; partitions <= maxPartitions; partitions *= 2) {
+                run(runtime, rows, commitEvery, partitions);
+            }
+        } finally {
+            platform.shutdown();
+        }
+    }
+
+    private static void run(
+        final Runtime runtime,
+        final int rows,
+        final int commitEvery,
+        final int partitions
+    )
+    {
+        final Either<Failure, Repository.Live> liveOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            PoolConfig.build(builder -> builder.maxSize(partitions)),
+            Tuple2.of("URL", "jdbc:h2:file:./target/parallel-load-" + partitions)
+        );
+        if (!liveOrFailure.isRight()) {
+            System.out.println(partitions + " partitions: " + liveOrFailure);
+            return;
+        }
+
+        final ParallelLoad<Integer> load = ParallelLoad.<Integer>of(
+            "INSERT INTO load(id, name) VALUES(?, ?)",
+            (ps, id) -> {
+                ps.setInt(1, id);
+                ps.setString(2, "Row " + id);
+            }
+        ).withPartitions(partitions).withCommitEvery(commitEvery);
+
+        try (Repository.Live live = liveOrFailure.right()) {
+            final Either<Failure, Integer> created = Cause.resultFlatten(
+                runtime.unsafeRun(
+                    Repository.use(Repository.batchUpdate(
+                        "DROP TABLE IF EXISTS load",
+                        "CREATE TABLE load(id INT PRIMARY KEY, name VARCHAR(30))"
+                    )).provide(Repository.Service.class, live)
+                )
+            );
+            if (!created.isRight()) {
+                System.out.println(partitions + " partitions: " + created);
+                return;
+            }
+
+            final long start = System.nanoTime();
+            final Either<Failure, ParallelLoad.LoadReport> report = Cause.resultFlatten(
+                runtime.unsafeRun(
+                    load.run(ids(rows)).provide(Repository.Service.class, live)
+                )
+            );
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf(
+                "%d partitions: %s rows in %d ms%n",
+                partitions,
+                report.isRight() ? report.right().committedRows() : report,
+                millis
+            );
+        }
+    }
+
+    private static Stream<Integer> ids(final int count)
+    {
+        return IntStream.range(0, count).boxed();
+    }
+}
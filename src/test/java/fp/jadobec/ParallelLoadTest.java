@@ -0,0 +1,156 @@
+package fp.jadobec;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelLoadTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    private final ParallelLoad<Person> load = ParallelLoad.<Person>of(
+        "INSERT INTO person(id, name, age) VALUES(?, ?, ?)",
+        (ps, person) -> {
+            final Record record = Record.from(person).get();
+            ps.setInt(1, record.fieldOrElse("id", 0));
+            ps.setString(2, record.fieldOrElse("name", null));
+            ps.setInt(3, record.fieldOrElse("age", 0));
+        }
+    ).withPartitions(3).withCommitEvery(20);
+
+    @Test
+    public void testParallelLoad()
+    {
+        final LongAdder progress = new LongAdder();
+
+        checkLoad(
+            "jdbc:h2:mem:parallelLoad;DB_CLOSE_DELAY=-1",
+            load.withProgress(loadProgress -> progress.increment())
+                .run(persons(250, 0).stream())
+                .peek(report -> {
+                    assertTrue(report.succeeded(), report.toString());
+                    assertEquals(250, report.committedRows());
+                    assertEquals(13, progress.sum());
+                }).flatMap(report -> countPersons())
+                .peek(count -> assertEquals(250, count))
+        );
+    }
+
+    @Test
+    public void testBoundedBuffers()
+    {
+        final LongAdder closed = new LongAdder();
+
+        checkLoad(
+            "jdbc:h2:mem:parallelLoadBounded;DB_CLOSE_DELAY=-1",
+            load.withBufferedChunks(1)
+                .withPartitioner(person ->
+                    Record.from(person).get().fieldOrElse("id", 0) % 7 == 0 ? 0 : 1
+                )
+                .run(persons(250, 0).stream().onClose(closed::increment))
+                .peek(report -> {
+                    assertTrue(report.succeeded(), report.toString());
+                    assertEquals(250, report.committedRows());
+                    assertEquals(1, closed.sum());
+                }).flatMap(report -> countPersons())
+                .peek(count -> assertEquals(250, count))
+        );
+    }
+
+    @Test
+    public void testResume()
+    {
+        checkLoad(
+            "jdbc:h2:mem:parallelLoadResume;DB_CLOSE_DELAY=-1",
+            load.run(persons(250, 105).stream())
+                .peek(report -> {
+                    assertFalse(report.succeeded());
+                    assertEquals(1, report.partitions().stream()
+                        .filter(result -> !result.isRight())
+                        .count()
+                    );
+                }).flatMap(report ->
+                    load.resume(report.checkpoint())
+                        .run(persons(250, 0).stream())
+                ).peek(report ->
+                    assertTrue(report.succeeded(), report.toString())
+                ).flatMap(report -> countPersons())
+                .peek(count -> assertEquals(250, count))
+        );
+    }
+
+    /**
+     * The name of the person {@code failing} is null, so it can not be
+     * inserted.
+     */
+    private static List<Person> persons(final int count, final int failing)
+    {
+        return IntStream.rangeClosed(1, count)
+            .mapToObj(id -> Person.of(id, id == failing ? null : "Person " + id, id % 90))
+            .collect(Collectors.toList());
+    }
+
+    private static IO<Failure, Integer> countPersons()
+    {
+        return Repository.use(
+            Repository.querySingle(
+                "SELECT count(DISTINCT id) FROM person",
+                rs -> rs.getInt(1)
+            )
+        );
+    }
+
+    private static <T> void checkLoad(
+        final String url,
+        final IO<Failure, T> testLoad
+    )
+    {
+        final Either<Failure, T> resultOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            PoolConfig.build(builder -> builder.maxSize(3)),
+            Tuple2.of("URL", url)
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.update(
+                        "CREATE TABLE person(" +
+                            "id INT PRIMARY KEY, " +
+                            "name VARCHAR(30) NOT NULL, " +
+                            "age INT" +
+                            ")"
+                    )
+                ).flatMap(v -> testLoad)
+                    .provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(resultOrFailure.isRight(), resultOrFailure.toString());
+    }
+}
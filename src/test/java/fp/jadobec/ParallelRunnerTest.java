@@ -0,0 +1,124 @@
+package fp.jadobec;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelRunnerTest
+{
+    @Test
+    public void testCallOnCallingThread() throws Exception
+    {
+        try (ParallelRunner runner = ParallelRunner.create()) {
+            assertEquals(
+                Thread.currentThread(),
+                runner.call(Thread::currentThread, thread -> {})
+            );
+        }
+    }
+
+    @Test
+    public void testCallOnExecutor() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "jadobec-test")
+        );
+        try (ParallelRunner runner = ParallelRunner.create().onExecutor(executor)) {
+            assertEquals(
+                "jadobec-test",
+                runner.call(() -> Thread.currentThread().getName(), name -> {})
+            );
+            assertThrows(
+                IllegalStateException.class,
+                () -> runner.call(
+                    () -> {
+                        throw new IllegalStateException("Failed");
+                    },
+                    value -> {}
+                )
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterruptedCall() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (ParallelRunner runner = ParallelRunner.create().onExecutor(executor)) {
+            final Thread caller = new Thread(() -> {
+                try {
+                    runner.call(
+                        () -> {
+                            started.countDown();
+                            try {
+                                Thread.sleep(10_000);
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                                throw e;
+                            }
+                            return "slept";
+                        },
+                        value -> {}
+                    );
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            caller.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            caller.interrupt();
+            caller.join(5_000);
+
+            assertTrue(failure.get() instanceof InterruptedException, "" + failure.get());
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAbandonedResult() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch abandoned = new CountDownLatch(1);
+        try (ParallelRunner runner = ParallelRunner.create().onExecutor(executor)) {
+            final Thread caller = new Thread(() -> {
+                try {
+                    runner.call(
+                        () -> {
+                            started.countDown();
+                            final long end = System.nanoTime() + 200_000_000L;
+                            while (System.nanoTime() < end) {
+                                Thread.onSpinWait();
+                            }
+                            return "connection";
+                        },
+                        value -> abandoned.countDown()
+                    );
+                } catch (Exception ignored) {
+                }
+            });
+            caller.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            caller.interrupt();
+
+            assertTrue(abandoned.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
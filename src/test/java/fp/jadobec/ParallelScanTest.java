@@ -0,0 +1,290 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelScanTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    final static ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRangeConditions()
+    {
+        assertEquals(
+            Arrays.asList(
+                new KeyRange(null, 100),
+                new KeyRange(100, 200),
+                new KeyRange(200, null)
+            ),
+            KeyRange.between(100, 200)
+        );
+        assertEquals("1 = 1", KeyRange.all().condition("id"));
+        assertEquals("id < ?", new KeyRange(null, 100).condition("id"));
+        assertEquals("id >= ?", new KeyRange(200, null).condition("id"));
+        assertEquals(
+            "id >= ? AND id < ?",
+            new KeyRange(100, 200).condition("id")
+        );
+    }
+
+    @Test
+    public void testRangeReader()
+    {
+        final Set<Rows> closed = ConcurrentHashMap.newKeySet();
+        final List<KeyRange> ranges = KeyRange.between(100, 200, 300);
+        final List<Integer> ids = new ArrayList<>();
+        try (RangeReader<Integer> reader = new RangeReader<>(
+            ranges,
+            range -> new Rows(range, closed),
+            2,
+            4,
+            executor
+        )) {
+            reader.spliterator().forEachRemaining(ids::add);
+        }
+
+        assertEquals(
+            IntStream.range(0, 400).boxed().collect(Collectors.toList()),
+            ids.stream().sorted().collect(Collectors.toList())
+        );
+        assertEquals(4, closed.size());
+    }
+
+    @Test
+    public void testRangeReaderParallel()
+    {
+        final Set<Rows> closed = ConcurrentHashMap.newKeySet();
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try (RangeReader<Integer> reader = new RangeReader<>(
+            KeyRange.between(100, 200, 300),
+            range -> new Rows(range, closed),
+            2,
+            4,
+            executor
+        )) {
+            final Spliterator<Integer> rows = reader.spliterator();
+            final Spliterator<Integer> prefix = rows.trySplit();
+            assertTrue(prefix != null);
+            assertEquals(null, prefix.trySplit());
+            assertEquals(null, rows.trySplit());
+
+            final List<Integer> ids = StreamSupport.stream(prefix, true)
+                .peek(id -> threads.add(Thread.currentThread()))
+                .collect(Collectors.toList());
+            rows.forEachRemaining(ids::add);
+            assertEquals(
+                IntStream.range(0, 400).boxed().collect(Collectors.toList()),
+                ids.stream().sorted().collect(Collectors.toList())
+            );
+        }
+        assertEquals(4, closed.size());
+        assertFalse(threads.isEmpty());
+    }
+
+    @Test
+    public void testRangeReaderCloseWaitsForReaders()
+    {
+        final Set<Rows> opened = ConcurrentHashMap.newKeySet();
+        final Set<Rows> closed = ConcurrentHashMap.newKeySet();
+        final RangeReader<Integer> reader = new RangeReader<>(
+            KeyRange.between(100, 200, 300),
+            range -> {
+                final Rows rows = new Rows(range, closed);
+                opened.add(rows);
+                return rows;
+            },
+            2,
+            4,
+            executor
+        );
+        final Spliterator<Integer> rows = reader.spliterator();
+        assertTrue(rows.tryAdvance(id -> {}));
+
+        reader.close();
+
+        assertFalse(opened.isEmpty());
+        assertEquals(opened, closed);
+        assertFalse(rows.tryAdvance(id -> {}));
+    }
+
+    @Test
+    public void testRangeReaderFailure()
+    {
+        final RangeReader<Integer> reader = new RangeReader<>(
+            KeyRange.between(100),
+            range -> {
+                throw new IllegalStateException("No connection");
+            },
+            2,
+            4,
+            executor
+        );
+
+        final Spliterator<Integer> rows = reader.spliterator();
+
+        assertThrows(
+            IllegalStateException.class,
+            () -> StreamSupport.stream(rows, true).count()
+        );
+        assertThrows(
+            IllegalStateException.class,
+            () -> rows.tryAdvance(id -> {})
+        );
+        reader.close();
+    }
+
+    @Test
+    public void testWrongSplitCount()
+    {
+        final Either<Failure, List<KeyRange>> rangesOrFailure =
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                KeyRange.split("item", "id", 0)
+            ));
+
+        assertFalse(rangesOrFailure.isRight());
+    }
+
+    @Test
+    public void testExplicitRanges()
+    {
+        checkScan("explicitScan", scanIds(KeyRange.between(250, 500, 750)));
+    }
+
+    @Test
+    public void testSplitRanges()
+    {
+        checkScan(
+            "splitScan",
+            KeyRange.split("item", "id", 4)
+                .peek(ranges -> assertEquals(4, ranges.size()))
+                .flatMap(ParallelScanTest::scanIds)
+        );
+    }
+
+    @Test
+    public void testNtileRanges()
+    {
+        checkScan(
+            "ntileScan",
+            KeyRange.ntile("item", "id", 8)
+                .peek(ranges -> assertEquals(8, ranges.size()))
+                .flatMap(ParallelScanTest::scanIds)
+        );
+    }
+
+    private static IO<Failure, List<Integer>> scanIds(final List<KeyRange> ranges)
+    {
+        return Repository.parallelScan(
+            "SELECT id FROM item WHERE {range} AND name LIKE 'Item %'",
+            "id",
+            ranges,
+            rs -> rs.getInt(1),
+            ids -> IO.succeed(ids.sorted().collect(Collectors.toList()))
+        );
+    }
+
+    /**
+     * The keys of the range, from 0 to 400 for the unbounded ends.
+     */
+    private static final class Rows implements Iterator<Integer>, AutoCloseable
+    {
+        private final Set<Rows> closed;
+
+        private int next;
+
+        private final int to;
+
+        private Rows(final KeyRange range, final Set<Rows> closed)
+        {
+            this.closed = closed;
+            this.next = range.from() == null ? 0 : (Integer) range.from();
+            this.to = range.to() == null ? 400 : (Integer) range.to();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < to;
+        }
+
+        @Override
+        public Integer next()
+        {
+            return next++;
+        }
+
+        @Override
+        public void close()
+        {
+            closed.add(this);
+        }
+    }
+
+    private static void checkScan(
+        final String name,
+        final IO<Failure, List<Integer>> scan
+    )
+    {
+        final Either<Failure, List<Integer>> idsOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            PoolConfig.build(builder -> builder.maxSize(16)),
+            Tuple2.of("URL", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.batchUpdate(
+                        "CREATE TABLE item(id INT PRIMARY KEY, name VARCHAR(30))",
+                        "INSERT INTO item SELECT x, 'Item ' || x"
+                            + " FROM SYSTEM_RANGE(1, 1000)"
+                    ).flatMap(count -> scan)
+                ).provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(idsOrFailure.isRight(), idsOrFailure.toString());
+        assertEquals(1000, idsOrFailure.right().size());
+        assertEquals(1, idsOrFailure.right().get(0));
+        assertEquals(1000, idsOrFailure.right().get(999));
+        assertEquals(1000, idsOrFailure.right().stream().distinct().count());
+    }
+}
@@ -0,0 +1,98 @@
+package fp.jadobec;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParamsTest
+{
+    @Test
+    public void testBindParams() throws SQLException
+    {
+        final Params params = Params.of(2)
+            .addInt(1)
+            .addLong(2L)
+            .addDouble(3.5)
+            .addBoolean(true)
+            .addString("four")
+            .addNull(Types.INTEGER)
+            .add(new BigDecimal("7.25"));
+
+        try (Connection connection = createConnection();
+            PreparedStatement ps = connection.prepareStatement(
+                "SELECT CAST(? AS INT), CAST(? AS BIGINT), CAST(? AS DOUBLE), "
+                    + "CAST(? AS BOOLEAN), CAST(? AS VARCHAR), CAST(? AS INT), "
+                    + "CAST(? AS DECIMAL(10, 2))"
+            ))
+        {
+            params.accept(ps);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertEquals(2L, rs.getLong(2));
+                assertEquals(3.5, rs.getDouble(3));
+                assertTrue(rs.getBoolean(4));
+                assertEquals("four", rs.getString(5));
+                assertNull(rs.getObject(6));
+                assertEquals(new BigDecimal("7.25"), rs.getBigDecimal(7));
+            }
+        }
+        assertEquals("Params(1, 2, 3.5, true, four, null, 7.25)", params.toString());
+    }
+
+    @Test
+    public void testReuseParams() throws SQLException
+    {
+        final Params params = Params.of();
+
+        try (Connection connection = createConnection();
+            PreparedStatement ps = connection.prepareStatement("SELECT ? + 1"))
+        {
+            for (int i = 0; i < 3; i++) {
+                params.clear().addInt(i).accept(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(i + 1, rs.getInt(1));
+                }
+            }
+        }
+        assertEquals(1, params.size());
+    }
+
+    @Test
+    public void testBindNullWithParameterTypes() throws SQLException
+    {
+        final ParameterTypes parameterTypes = new ParameterTypes();
+        final String sql = "SELECT CAST(? AS INT) IS NULL, CAST(? AS VARCHAR)";
+
+        try (Connection connection = createConnection();
+            PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            parameterTypes.bind(sql, ps, new Object[] {null, "x"});
+
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertTrue(rs.getBoolean(1));
+                assertEquals("x", rs.getString(2));
+            }
+        }
+    }
+
+    private static Connection createConnection() throws SQLException
+    {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:");
+        return dataSource.getConnection();
+    }
+}
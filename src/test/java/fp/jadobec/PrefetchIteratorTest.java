@@ -0,0 +1,109 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrefetchIteratorTest
+{
+    final static ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll
+    public static void setUp()
+    {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testReadAll() throws Exception
+    {
+        final AtomicBoolean released = new AtomicBoolean(false);
+        final List<Integer> elements = new ArrayList<>();
+
+        try (PrefetchIterator<Integer> iterator = new PrefetchIterator<>(
+            Arrays.asList(1, null, 3).iterator(),
+            () -> released.set(true),
+            1,
+            executor
+        ))
+        {
+            iterator.forEachRemaining(elements::add);
+        }
+
+        assertEquals(Arrays.asList(1, null, 3), elements);
+        assertTrue(released.get());
+    }
+
+    @Test
+    public void testCloseStopsProducer() throws Exception
+    {
+        final AtomicBoolean released = new AtomicBoolean(false);
+        final Iterator<Integer> endless = new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                assertFalse(released.get());
+                return true;
+            }
+
+            @Override
+            public Integer next()
+            {
+                return next++;
+            }
+        };
+
+        final PrefetchIterator<Integer> iterator = new PrefetchIterator<>(
+            endless,
+            () -> released.set(true),
+            2,
+            executor
+        );
+        assertEquals(0, iterator.next());
+        iterator.close();
+
+        assertTrue(released.get());
+    }
+
+    @Test
+    public void testFailure() throws Exception
+    {
+        final Iterator<Integer> failing = new Iterator<>() {
+            @Override
+            public boolean hasNext()
+            {
+                return true;
+            }
+
+            @Override
+            public Integer next()
+            {
+                throw new IllegalStateException("Broken row");
+            }
+        };
+
+        try (PrefetchIterator<Integer> iterator = new PrefetchIterator<>(
+            failing,
+            () -> {},
+            2,
+            executor
+        ))
+        {
+            assertThrows(IllegalStateException.class, iterator::hasNext);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package fp.jadobec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryPublisherTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    final static ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDemand() throws Exception
+    {
+        final Rows rows = new Rows(1, 2, 3);
+        final Collector<Integer> collector = new Collector<>(2);
+
+        new QueryPublisher<Integer>(() -> rows, executor).subscribe(collector);
+
+        collector.requested.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(1, 2), collector.items);
+        assertEquals(2, rows.read);
+
+        collector.subscription.request(2);
+        collector.completed.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(1, 2, 3), collector.items);
+        assertTrue(rows.closed.get());
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        final Rows rows = new Rows(1, 2, 3);
+        final Collector<Integer> collector = new Collector<>(1);
+
+        new QueryPublisher<Integer>(() -> rows, executor).subscribe(collector);
+        collector.requested.get(5, TimeUnit.SECONDS);
+        collector.subscription.cancel();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!rows.closed.get() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(rows.closed.get());
+        assertFalse(collector.completed.isDone());
+    }
+
+    @Test
+    public void testSubscriberIterator() throws Exception
+    {
+        final Rows rows = new Rows(1, 2, 3, 4, 5, 6, 7);
+        final List<Integer> items = new ArrayList<>();
+
+        try (SubscriberIterator<Integer> iterator = SubscriberIterator.subscribe(
+            new QueryPublisher<Integer>(() -> rows, executor),
+            2
+        )) {
+            assertTrue(iterator.hasNext());
+            Thread.sleep(50);
+            assertEquals(2, rows.read);
+
+            iterator.forEachRemaining(items::add);
+        }
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), items);
+        assertTrue(rows.closed.get());
+    }
+
+    @Test
+    public void testSubscriberIteratorClose() throws Exception
+    {
+        final Rows rows = new Rows(1, 2, 3, 4, 5, 6, 7);
+
+        try (SubscriberIterator<Integer> iterator = SubscriberIterator.subscribe(
+            new QueryPublisher<Integer>(() -> rows, executor),
+            2
+        )) {
+            assertEquals(1, iterator.next());
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!rows.closed.get() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(rows.closed.get());
+        assertTrue(rows.read < 7);
+    }
+
+    @Test
+    public void testQueryPublisher()
+    {
+        final Either<Failure, List<String>> namesOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            Tuple2.of("URL", "jdbc:h2:mem:publisher")
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.batchUpdate(
+                        "CREATE TABLE person(id INT, name VARCHAR(30))",
+                        "INSERT INTO person VALUES(1, 'John Doe')",
+                        "INSERT INTO person VALUES(2, 'Jane Doe')"
+                    ).flatMap(i ->
+                        Repository.<String>queryPublisher(
+                            "SELECT name FROM person WHERE id >= ? ORDER BY id",
+                            ps -> ps.setInt(1, 1),
+                            rs -> rs.getString(1)
+                        )
+                    ).flatMap(QueryPublisherTest::collect)
+                ).provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(namesOrFailure.isRight(), namesOrFailure.toString());
+        assertEquals(Arrays.asList("John Doe", "Jane Doe"), namesOrFailure.right());
+    }
+
+    private static <T> IO<Failure, List<T>> collect(final Flow.Publisher<T> publisher)
+    {
+        return IO.effect(() -> {
+            final Collector<T> collector = new Collector<>(1);
+            publisher.subscribe(collector);
+            collector.requested.get(5, TimeUnit.SECONDS);
+            collector.subscription.request(Long.MAX_VALUE);
+            collector.completed.get(5, TimeUnit.SECONDS);
+            return collector.items;
+        });
+    }
+
+    private static final class Collector<T> implements Flow.Subscriber<T>
+    {
+        private final List<T> items = new ArrayList<>();
+
+        private final CompletableFuture<Void> requested = new CompletableFuture<>();
+
+        private final CompletableFuture<Void> completed = new CompletableFuture<>();
+
+        private final int initialRequest;
+
+        private volatile Flow.Subscription subscription;
+
+        private Collector(final int initialRequest)
+        {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(final T item)
+        {
+            items.add(item);
+            if (items.size() == initialRequest) {
+                requested.complete(null);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable)
+        {
+            completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed.complete(null);
+        }
+    }
+
+    private static final class Rows implements Iterator<Integer>, AutoCloseable
+    {
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private final List<Integer> values;
+
+        private volatile int read = 0;
+
+        private Rows(final Integer... values)
+        {
+            this.values = Arrays.asList(values);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return read < values.size();
+        }
+
+        @Override
+        public Integer next()
+        {
+            return values.get(read++);
+        }
+
+        @Override
+        public void close()
+        {
+            closed.set(true);
+        }
+    }
+}
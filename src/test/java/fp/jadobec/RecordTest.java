@@ -1,5 +1,15 @@
 package fp.jadobec;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.Test;
 
 import fp.util.Either;
@@ -7,6 +17,8 @@ import fp.util.Failure;
 import fp.util.Right;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class RecordTest
 {
@@ -46,6 +58,33 @@ public class RecordTest
         assertEquals(Right.of(Person.of(3, "Jake Doe", 13)), personOrFailure);
     }
 
+    @Test
+    public void testRecordAsJavaRecordByName()
+    {
+        final Record record = Record.build(builder -> builder
+            .field("id", 3)
+            .field("age", 13)
+            .field("name", "Jake Doe")
+        );
+
+        assertEquals(
+            Right.of(new PersonRow("Jake Doe", 3, 13)),
+            record.as(PersonRow.class)
+        );
+        assertSame(RecordMapper.of(PersonRow.class), RecordMapper.of(PersonRow.class));
+    }
+
+    @Test
+    public void testRecordAsFailure()
+    {
+        final Record record = Record.build(builder -> builder
+            .field("id", 3)
+            .field("name", "Jake Doe")
+        );
+
+        assertFalse(record.as(PersonRow.class).isRight());
+    }
+
     @Test
     public void testPersonAsRecord()
     {
@@ -59,4 +98,59 @@ public class RecordTest
         final Either<Failure, Record> recordOrFailure = Record.from(person);
         assertEquals(Right.of(record), recordOrFailure);
     }
+
+    @Test
+    public void testRecordHashCode()
+    {
+        final Record record = Record.build(builder -> builder
+            .field("id", 3)
+            .field("name", "Jake Doe")
+        );
+        final Record reordered = Record.build(builder -> builder
+            .field("name", "Jake Doe")
+            .field("id", 3)
+        );
+
+        assertEquals(record, reordered);
+        assertEquals(record.hashCode(), reordered.hashCode());
+        assertEquals(1, new HashSet<>(Arrays.asList(record, reordered)).size());
+    }
+
+    @Test
+    public void testRecordOfResultSet() throws SQLException
+    {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:");
+
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(
+                "SELECT * FROM (VALUES (1, 'John Doe', NULL), (2, 'Jane Doe', 28)) "
+                    + "AS person(ID, NAME, AGE)"
+            ))
+        {
+            rs.next();
+            final Record john = Record.of(rs).get();
+            rs.next();
+            final Record jane = Record.of(rs).get();
+
+            assertEquals(Arrays.asList("id", "name", "age"), new ArrayList<>(john.fields()));
+            assertEquals(Optional.empty(), john.field("age"));
+            assertEquals(32, (int) john.fieldOrElse("age", 32));
+            assertEquals(Optional.of("Jane Doe"), jane.field("name"));
+            assertEquals(Arrays.asList(2, "Jane Doe", 28), new ArrayList<>(jane.values()));
+            assertEquals(
+                Record.build(builder -> builder
+                    .field("age", 28)
+                    .field("id", 2)
+                    .field("name", "Jane Doe")
+                ),
+                jane
+            );
+        }
+    }
+
+    public record PersonRow(String name, int id, int age)
+    {
+    }
 }
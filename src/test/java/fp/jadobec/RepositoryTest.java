@@ -1,12 +1,28 @@
 package fp.jadobec;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import fp.io.Cause;
@@ -15,10 +31,12 @@ import fp.io.DefaultRuntime;
 import fp.io.IO;
 import fp.io.Runtime;
 import fp.util.Either;
+import fp.util.ExceptionFailure;
 import fp.util.Failure;
 import fp.util.GeneralFailure;
 import fp.util.Tuple2;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -87,6 +105,136 @@ public class RepositoryTest
         );
     }
 
+    @Test
+    public void testQueryWithOptions()
+    {
+        final QueryOptions options = QueryOptions.build(builder -> builder
+            .fetchSize(1)
+            .maxRows(1)
+            .streaming(true)
+        );
+
+        checkDbCommand(
+            Repository.query(
+                "SELECT id, name, age FROM person ORDER BY id",
+                options,
+                RepositoryTest::extractPerson,
+                Repository::mapToList
+            ).peek(persons ->
+                assertEquals(Arrays.asList(johnDoe), persons)
+            ).flatMap(persons ->
+                isAutoCommit()
+            ).peek(Assertions::assertTrue)
+        );
+    }
+
+    @Test
+    public void testQueryWithPrefetch()
+    {
+        checkDbCommand(
+            Repository.query(
+                "SELECT id, name, age FROM person ORDER BY id",
+                QueryOptions.build(builder -> builder.prefetch(1)),
+                RepositoryTest::extractPerson,
+                Repository::mapToList
+            ).peek(persons ->
+                assertEquals(expectedPersons, persons)
+            )
+        );
+    }
+
+    @Test
+    public void testQueryWithTimeout()
+    {
+        checkDbCommand(
+            Repository.withTimeout(
+                Duration.ofMinutes(1),
+                Repository.query(
+                    "SELECT id, name, age FROM person ORDER BY id",
+                    QueryOptions.build(builder ->
+                        builder.queryTimeout(Duration.ofSeconds(10))
+                    ),
+                    RepositoryTest::extractPerson,
+                    Repository::mapToList
+                )
+            ).peek(persons ->
+                assertEquals(expectedPersons, persons)
+            )
+        );
+    }
+
+    @Test
+    public void testDeadlineExceeded()
+    {
+        checkDbCommand(
+            Repository.withTimeout(
+                Duration.ZERO,
+                selectSingleAsPerson(2)
+            ).foldCauseM(
+                cause -> IO.succeed(1),
+                success -> IO.fail(Cause.fail(GeneralFailure.of(success)))
+            ).flatMap(v ->
+                selectSingleAsPerson(2)
+            ).peek(person ->
+                assertEquals(janeDoe, person)
+            )
+        );
+    }
+
+    @Test
+    public void testDeadlineCancelsRunningStatement()
+    {
+        checkDbCommand(
+            Repository.withTimeout(
+                Duration.ofMillis(200),
+                Repository.querySingle(
+                    "SELECT SUM(X) FROM SYSTEM_RANGE(1, 10000000000)",
+                    rs -> rs.getLong(1)
+                )
+            ).foldCauseM(
+                cause -> IO.succeed(1),
+                success -> IO.fail(Cause.fail(GeneralFailure.of(success)))
+            )
+        );
+    }
+
+    @Test
+    public void testCancelOverdue()
+    {
+        final AtomicInteger cancels = new AtomicInteger();
+        final Statement late = cancelCounting(cancels);
+        final Statement onTime = cancelCounting(cancels);
+        final ConnectionState state = new ConnectionState(null);
+        final long now = System.nanoTime();
+
+        state.started(late, now - 1);
+        state.started(onTime, now + Duration.ofMinutes(1).toNanos());
+        state.cancelOverdue(now);
+        assertEquals(1, cancels.get());
+
+        state.cancelOverdue(now);
+        assertEquals(1, cancels.get());
+
+        state.cancelRunning();
+        assertEquals(2, cancels.get());
+    }
+
+    private static Statement cancelCounting(final AtomicInteger cancels)
+    {
+        return (Statement) Proxy.newProxyInstance(
+            Statement.class.getClassLoader(),
+            new Class<?>[] { Statement.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("cancel")) {
+                    cancels.incrementAndGet();
+                }
+                return method.getName().equals("hashCode")
+                    ? System.identityHashCode(proxy)
+                    : method.getName().equals("equals") ? proxy == args[0] : null;
+            }
+        );
+    }
+
     @Test
     public void testUpdatePreparedPerson()
     {
@@ -99,6 +247,44 @@ public class RepositoryTest
         );
     }
 
+    @Test
+    public void testUpdateWithParams()
+    {
+        final Params params = Params.of()
+            .addString("Jake Doe")
+            .addInt(2);
+
+        checkDbCommand(
+            Repository.updatePrepared(
+                "UPDATE person SET name = ? WHERE id = ?",
+                params
+            ).flatMap(v ->
+                selectSingleAsPerson(2)
+            ).peek(person ->
+                assertEquals(jakeDoe, person)
+            )
+        );
+    }
+
+    @Test
+    public void testUpdateNullParam()
+    {
+        checkDbCommand(
+            Repository.update(
+                "UPDATE person SET age = ? WHERE id = ?",
+                null,
+                2
+            ).flatMap(v ->
+                Repository.querySingle(
+                    "SELECT count(*) FROM person WHERE age IS NULL",
+                    rs -> rs.getInt(1)
+                )
+            ).peek(count ->
+                assertEquals(1, count)
+            )
+        );
+    }
+
     @Test
     public void testGoodTransaction()
     {
@@ -130,6 +316,114 @@ public class RepositoryTest
         );
     }
 
+    @Test
+    public void testNestedTransaction()
+    {
+        checkDbCommand(
+            Repository.transaction(
+                updatePersonName(2, "Jake Doe").flatMap(v ->
+                    Repository.transaction(
+                        updatePersonName(1, "Jim Doe").flatMap(i ->
+                            updatePersonName(1, null)
+                        )
+                    ).recover(failure -> IO.succeed(1))
+                ).flatMap(v ->
+                    Repository.transaction(
+                        Repository.update("INSERT INTO person VALUES(3, 'Big Joe', 2)")
+                    )
+                )
+            ).flatMap(v ->
+                Repository.query(
+                    "SELECT id, name, age FROM person ORDER BY id",
+                    RepositoryTest::extractPerson,
+                    Repository::mapToList
+                )
+            ).peek(persons ->
+                assertEquals(
+                    Arrays.asList(johnDoe, jakeDoe, Person.of(3, "Big Joe", 2)),
+                    persons
+                )
+            ).flatMap(persons ->
+                isAutoCommit()
+            ).peek(Assertions::assertTrue)
+        );
+    }
+
+    @Test
+    public void testNestedRollbackReleasesSavepoint()
+    {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:");
+        final AtomicInteger releases = new AtomicInteger();
+
+        final Either<Failure, Integer> resultOrFailure = Repository.Live.create(
+            releaseCounting(dataSource, releases),
+            "SELECT 1"
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    fill().flatMap(i ->
+                        Repository.transaction(
+                            Repository.transaction(
+                                updatePersonName(1, null)
+                            ).recover(failure -> IO.succeed(0))
+                        )
+                    )
+                ).provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(resultOrFailure.isRight(), resultOrFailure.toString());
+        assertEquals(1, releases.get());
+    }
+
+    private static DataSource releaseCounting(
+        final DataSource dataSource,
+        final AtomicInteger releases
+    )
+    {
+        return (DataSource) Proxy.newProxyInstance(
+            DataSource.class.getClassLoader(),
+            new Class<?>[] { DataSource.class },
+            (proxy, method, args) -> {
+                final Object result = invoke(dataSource, method, args);
+                return result instanceof Connection connection
+                    ? releaseCounting(connection, releases)
+                    : result;
+            }
+        );
+    }
+
+    private static Connection releaseCounting(
+        final Connection connection,
+        final AtomicInteger releases
+    )
+    {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("releaseSavepoint")) {
+                    releases.incrementAndGet();
+                }
+                return invoke(connection, method, args);
+            }
+        );
+    }
+
+    private static Object invoke(
+        final Object target,
+        final Method method,
+        final Object[] args
+    ) throws Throwable
+    {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
     @Test
     public void testTransactionCommitFailure()
     {
@@ -147,6 +441,155 @@ public class RepositoryTest
         );
     }
 
+    @Test
+    public void testBatchUpdatePrepared()
+    {
+        final List<Person> newPersons = Arrays.asList(
+            Person.of(3, "Jake Doe", 13),
+            Person.of(4, "Jare Doe", 8),
+            Person.of(5, "Jill Doe", 3)
+        );
+
+        checkDbCommand(
+            Repository.batchUpdatePrepared(
+                "INSERT INTO person(id, name, age) VALUES(?, ?, ?)",
+                newPersons,
+                (ps, person) -> {
+                    final Record record = Record.from(person).get();
+                    ps.setInt(1, record.fieldOrElse("id", 0));
+                    ps.setString(2, record.fieldOrElse("name", ""));
+                    ps.setInt(3, record.fieldOrElse("age", 0));
+                },
+                2
+            ).peek(updateCounts ->
+                assertArrayEquals(new int[] {1, 1, 1}, updateCounts)
+            ).flatMap(updateCounts ->
+                Repository.querySingle(
+                    "SELECT count(*) FROM person",
+                    rs -> rs.getInt(1)
+                )
+            ).peek(count ->
+                assertEquals(5, count)
+            )
+        );
+    }
+
+    @Test
+    public void testExecute()
+    {
+        checkDbCommand(
+            Repository.execute(
+                "UPDATE person SET age = age + 1 WHERE age > ?",
+                20
+            ).peek(count ->
+                assertEquals(2L, count)
+            )
+        );
+    }
+
+    @Test
+    public void testInsertReturningKey()
+    {
+        checkDbCommand(
+            Repository.insertReturningKey(
+                "INSERT INTO person(name, age) VALUES(?, ?)",
+                "Jake Doe",
+                13
+            ).peek(id ->
+                assertEquals(3L, id)
+            )
+        );
+    }
+
+    @Test
+    public void testInsertReturningKeys()
+    {
+        final List<Person> newPersons = Arrays.asList(
+            Person.of(0, "Jake Doe", 13),
+            Person.of(0, "Jare Doe", 8)
+        );
+
+        checkDbCommand(
+            Repository.insertReturningKeys(
+                "INSERT INTO person(name, age) VALUES(?, ?)",
+                Arrays.asList("ID"),
+                newPersons,
+                (ps, person) -> {
+                    final Record record = Record.from(person).get();
+                    ps.setString(1, record.fieldOrElse("name", ""));
+                    ps.setInt(2, record.fieldOrElse("age", 0));
+                }
+            ).peek(keys ->
+                assertEquals(
+                    Arrays.asList(3, 4),
+                    keys.stream()
+                        .map(key -> key.fieldOrElse("id", 0))
+                        .collect(Collectors.toList())
+                )
+            )
+        );
+    }
+
+    @Test
+    public void testBulkInsert()
+    {
+        final Stream<Record> records = IntStream.rangeClosed(3, 15)
+            .mapToObj(id -> Record.build(builder -> builder
+                .field("id", id)
+                .field("name", "Person " + id)
+                .field("age", id % 2 == 0 ? null : id)
+            ));
+
+        checkDbCommand(
+            Repository.bulkInsert("person", records)
+                .peek(count ->
+                    assertEquals(13L, count)
+                ).flatMap(count ->
+                    Repository.querySingle(
+                        "SELECT count(*), count(age) FROM person",
+                        rs -> Arrays.asList(rs.getInt(1), rs.getInt(2))
+                    )
+                ).peek(counts ->
+                    assertEquals(Arrays.asList(15, 9), counts)
+                )
+        );
+    }
+
+    @Test
+    public void testBatchUpdateCount()
+    {
+        checkDbCommand(
+            Repository.batchUpdate(
+                "UPDATE person SET age = age + 1",
+                "DELETE FROM person WHERE id = 1"
+            ).peek(count ->
+                assertEquals(3, count)
+            )
+        );
+    }
+
+    @Test
+    public void testJdbcOnExecutor()
+    {
+        final AtomicInteger executed = new AtomicInteger();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            checkDbCommand(
+                live -> live.withExecutor(task -> {
+                    executed.incrementAndGet();
+                    executor.execute(task);
+                }),
+                Repository.transaction(selectSingleAsPerson(1))
+                    .peek(person -> {
+                        assertEquals(johnDoe, person);
+                        assertTrue(executed.get() >= 4, "" + executed.get());
+                    })
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private static IO<Failure, Integer> updatePersonName(
         final int id,
         final String name
@@ -161,6 +604,13 @@ public class RepositoryTest
         );
     }
 
+    private static IO<Failure, Boolean> isAutoCommit()
+    {
+        return IO.absolve(IO.access(Connection.class, connection ->
+            ExceptionFailure.tryCatch(connection::getAutoCommit)
+        ));
+    }
+
     private static IO<Failure, Person> selectSingleAsPerson(
         final Integer id
     )
@@ -184,8 +634,17 @@ public class RepositoryTest
     private static <T> void checkDbCommand(
         final IO<Failure, T> testDbCommand
     )
+    {
+        checkDbCommand(live -> live, testDbCommand);
+    }
+
+    private static <T> void checkDbCommand(
+        final Function<Repository.Live, Repository.Live> configure,
+        final IO<Failure, T> testDbCommand
+    )
     {
         final Either<Failure, T> repositoryOrFailure = createRepository()
+            .map(configure)
             .flatMap(repository ->
                 Cause.resultFlatten(defaultRuntime.unsafeRun(
                     Repository.use(
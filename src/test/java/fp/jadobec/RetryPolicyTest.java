@@ -0,0 +1,152 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.ExceptionFailure;
+import fp.util.Failure;
+import fp.util.GeneralFailure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryPolicyTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    private final RetryPolicy retryPolicy = RetryPolicy.build(builder -> builder
+        .maxAttempts(3)
+        .initialBackoff(Duration.ofMillis(1))
+        .maxBackoff(Duration.ofMillis(4))
+    );
+
+    @Test
+    public void testRetryable()
+    {
+        final Failure serialization = ExceptionFailure.of(
+            new SQLTransactionRollbackException("Conflict", "40001")
+        );
+        final SQLException batch = new SQLException("Batch failed", "22000");
+        batch.setNextException(new SQLException("Deadlock", "40P01"));
+
+        assertTrue(retryPolicy.retries(serialization, 2));
+        assertFalse(retryPolicy.retries(serialization, 3));
+        assertTrue(retryPolicy.isRetryable(ExceptionFailure.of(batch)));
+        assertTrue(retryPolicy.isRetryable(
+            ExceptionFailure.of(new RuntimeException(batch))
+        ));
+        assertFalse(retryPolicy.isRetryable(
+            ExceptionFailure.of(new SQLException("Unique", "23505"))
+        ));
+        assertFalse(retryPolicy.isRetryable(GeneralFailure.of("Conflict")));
+    }
+
+    @Test
+    public void testBackoff()
+    {
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            final Duration backoff = retryPolicy.backoff(attempt);
+            final long cap = Math.min(4, 1L << Math.min(attempt - 1, 30));
+            assertTrue(
+                backoff.compareTo(Duration.ofMillis(cap)) <= 0
+                    && backoff.compareTo(Duration.ofMillis(cap).dividedBy(2)) >= 0,
+                attempt + ": " + backoff
+            );
+        }
+    }
+
+    @Test
+    public void testLongBackoff()
+    {
+        final RetryPolicy longBackoff = RetryPolicy.build(builder -> builder
+            .initialBackoff(Duration.ofNanos(1L << 34))
+            .maxBackoff(Duration.ofMinutes(1))
+        );
+
+        for (int attempt : new int[] { 1, 2, 3, 31, 32, 64, Integer.MAX_VALUE }) {
+            final Duration backoff = longBackoff.backoff(attempt);
+            final Duration cap = attempt <= 2
+                ? Duration.ofNanos(1L << (33 + attempt))
+                : Duration.ofMinutes(1);
+            assertTrue(
+                backoff.compareTo(cap) <= 0
+                    && backoff.compareTo(cap.dividedBy(2)) >= 0,
+                attempt + ": " + backoff
+            );
+        }
+    }
+
+    @Test
+    public void testRetriedTransaction()
+    {
+        checkRetriedTransaction(true);
+    }
+
+    @Test
+    public void testRetriedTransactionWithoutAutoCommit()
+    {
+        checkRetriedTransaction(false);
+    }
+
+    private void checkRetriedTransaction(final boolean autoCommit)
+    {
+        final IO<Failure, Void> setAutoCommit = IO.absolve(IO.access(
+            Connection.class,
+            connection -> ExceptionFailure.tryCatch(() -> {
+                connection.setAutoCommit(autoCommit);
+                return null;
+            })
+        ));
+        final AtomicInteger attempts = new AtomicInteger();
+        final IO<Failure, Integer> conflicting = IO.effect(() -> {
+            final int attempt = attempts.incrementAndGet();
+            if (attempt < 3) {
+                throw new SQLTransactionRollbackException("Conflict", "40001");
+            }
+            return attempt;
+        });
+
+        final Either<Failure, RetryStats> statsOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            Tuple2.of("URL", "jdbc:h2:mem:")
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    setAutoCommit.flatMap(v -> Repository.transaction(conflicting))
+                        .peek(attempt -> assertEquals(3, attempt))
+                        .flatMap(attempt -> Repository.retryStats())
+                ).provide(
+                    Repository.Service.class,
+                    repository.withRetryPolicy(retryPolicy)
+                )
+            ))
+        );
+
+        assertTrue(statsOrFailure.isRight(), statsOrFailure.toString());
+        assertEquals(new RetryStats(2, 1, 0), statsOrFailure.right());
+    }
+}
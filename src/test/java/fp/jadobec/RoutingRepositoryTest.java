@@ -0,0 +1,212 @@
+package fp.jadobec;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Right;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoutingRepositoryTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    @Test
+    public void testRouting()
+    {
+        checkDbCommand(
+            "routing",
+            RoutingConfig.defaults(),
+            selectName(2)
+                .peek(name -> assertEquals("Jane Replica", name))
+                .flatMap(name -> Repository.transaction(selectName(2)))
+                .peek(name -> assertEquals("Jane Doe", name))
+                .flatMap(name -> updatePersonName(1, "Jim Doe"))
+                .flatMap(v -> selectName(1))
+                .peek(name -> assertEquals("John Replica", name))
+        );
+    }
+
+    @Test
+    public void testReadYourWrites()
+    {
+        checkDbCommand(
+            "readYourWrites",
+            RoutingConfig.build(builder -> builder
+                .selection(RoutingConfig.Selection.LEAST_OUTSTANDING)
+                .readYourWrites(Duration.ofMinutes(1))
+            ),
+            selectName(1)
+                .peek(name -> assertEquals("John Replica", name))
+                .flatMap(name -> updatePersonName(1, "Jim Doe"))
+                .flatMap(v -> selectName(1))
+                .peek(name -> assertEquals("Jim Doe", name))
+        );
+    }
+
+    @Test
+    public void testLaggingReplica()
+    {
+        checkDbCommand(
+            "lagging",
+            RoutingConfig.build(builder -> builder
+                .lagQuery("SELECT 60")
+                .maxLag(Duration.ofSeconds(5))
+            ),
+            selectName(2)
+                .peek(name -> assertEquals("Jane Doe", name))
+        );
+    }
+
+    @Test
+    public void testLaggingReplicaFallsThrough()
+    {
+        final Either<Failure, String> resultOrFailure = createRepository("fallThroughPrimary")
+            .flatMap(primary -> createRepository("fallThroughStale")
+                .flatMap(stale -> createRepository("fallThroughFresh")
+                    .flatMap(fresh ->
+                        fill(primary, "Doe").flatMap(i ->
+                            fill(stale, "Stale")
+                        ).flatMap(i ->
+                            fill(fresh, "Fresh")
+                        ).flatMap(i ->
+                            setLag(stale, 60)
+                        ).flatMap(i ->
+                            setLag(fresh, 0)
+                        ).flatMap(i ->
+                            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                                Repository.use(
+                                    selectName(2)
+                                        .peek(name -> assertEquals("Jane Fresh", name))
+                                        .flatMap(name -> selectName(2))
+                                )
+                                    .provide(
+                                        Repository.Service.class,
+                                        RoutingRepository.of(
+                                            primary,
+                                            RoutingConfig.build(builder -> builder
+                                                .lagQuery("SELECT seconds FROM lag")
+                                                .maxLag(Duration.ofSeconds(5))
+                                            ),
+                                            "stale",
+                                            "fresh"
+                                        )
+                                    )
+                                    .provide("stale", Repository.Service.class, stale)
+                                    .provide("fresh", Repository.Service.class, fresh)
+                            ))
+                        )
+                    )
+                )
+            );
+
+        assertEquals(Right.of("Jane Fresh"), resultOrFailure);
+    }
+
+    private static Either<Failure, Integer> setLag(
+        final Repository.Service repository,
+        final int seconds
+    )
+    {
+        return Cause.resultFlatten(defaultRuntime.unsafeRun(
+            Repository.use(
+                Repository.batchUpdate(
+                    "CREATE TABLE lag(seconds INT)",
+                    "INSERT INTO lag VALUES(" + seconds + ")"
+                )
+            ).provide(Repository.Service.class, repository)
+        ));
+    }
+
+    private static IO<Failure, Integer> updatePersonName(
+        final int id,
+        final String name
+    )
+    {
+        return Repository.update("UPDATE person SET name = ? WHERE id = ?", name, id);
+    }
+
+    private static IO<Failure, String> selectName(final int id)
+    {
+        return Repository.querySingle(
+            "SELECT name FROM person WHERE id = ?",
+            rs -> rs.getString(1),
+            id
+        );
+    }
+
+    private static <T> void checkDbCommand(
+        final String name,
+        final RoutingConfig config,
+        final IO<Failure, T> testDbCommand
+    )
+    {
+        final Either<Failure, T> resultOrFailure = createRepository(name + "Primary")
+            .flatMap(primary -> createRepository(name + "Replica")
+                .flatMap(replica ->
+                    fill(primary, "Doe").flatMap(i ->
+                        fill(replica, "Replica")
+                    ).flatMap(i ->
+                        Cause.resultFlatten(defaultRuntime.unsafeRun(
+                            Repository.use(testDbCommand)
+                                .provide(
+                                    Repository.Service.class,
+                                    RoutingRepository.of(primary, config, "replica")
+                                )
+                                .provide("replica", Repository.Service.class, replica)
+                        ))
+                    )
+                ));
+
+        assertTrue(resultOrFailure.isRight(), resultOrFailure.toString());
+    }
+
+    private static Either<Failure, Repository.Live> createRepository(final String name)
+    {
+        return Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            Tuple2.of("URL", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+        );
+    }
+
+    private static Either<Failure, Integer> fill(
+        final Repository.Service repository,
+        final String lastName
+    )
+    {
+        return Cause.resultFlatten(defaultRuntime.unsafeRun(
+            Repository.use(
+                Repository.batchUpdate(
+                    "CREATE TABLE person(" +
+                        "id INT auto_increment UNIQUE, " +
+                        "name VARCHAR(30) NOT NULL, " +
+                        "age INT" +
+                        ")",
+                    "INSERT INTO person VALUES(1, 'John " + lastName + "', 32)",
+                    "INSERT INTO person VALUES(2, 'Jane " + lastName + "', 28)"
+                )
+            ).provide(Repository.Service.class, repository)
+        ));
+    }
+}
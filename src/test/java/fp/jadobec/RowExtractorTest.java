@@ -0,0 +1,98 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RowExtractorTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    @Row
+    public record PersonRow(int id, String name, Integer age)
+    {
+    }
+
+    @Row
+    public record UserRow(@Row.Column("id_user") long id, String name)
+    {
+    }
+
+    @Test
+    public void testGeneratedExtractor() throws SQLException
+    {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:");
+
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(
+                "SELECT * FROM (VALUES ('John Doe', NULL, 1), ('Jane Doe', 28, 2)) "
+                    + "AS person(name, age, id)"
+            ))
+        {
+            final List<PersonRow> persons = new ArrayList<>();
+            while (rs.next()) {
+                persons.add(RowExtractorTest_PersonRowExtractor.INSTANCE.extract(rs));
+            }
+
+            assertEquals(
+                Arrays.asList(
+                    new PersonRow(1, "John Doe", null),
+                    new PersonRow(2, "Jane Doe", 28)
+                ),
+                persons
+            );
+        }
+    }
+
+    @Test
+    public void testQueryWithGeneratedExtractor()
+    {
+        final Either<Failure, UserRow> userOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            Tuple2.of("URL", "jdbc:h2:mem:")
+        ).flatMap(repository ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(
+                    Repository.querySingle(
+                        "SELECT 'Jane Doe' AS name, 2 AS id_user",
+                        RowExtractorTest_UserRowExtractor.INSTANCE
+                    )
+                ).provide(Repository.Service.class, repository)
+            ))
+        );
+
+        assertTrue(userOrFailure.isRight(), userOrFailure.toString());
+        assertEquals(new UserRow(2, "Jane Doe"), userOrFailure.right());
+    }
+}
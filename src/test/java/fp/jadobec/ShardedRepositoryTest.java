@@ -0,0 +1,139 @@
+package fp.jadobec;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedRepositoryTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    @Test
+    public void testShardedQueries()
+    {
+        checkSharded("sharded", persons ->
+            insertPersons(persons)
+                .flatMap(v ->
+                    persons.update(3, "UPDATE person SET age = age + 1 WHERE id = ?", 3)
+                ).flatMap(count ->
+                    persons.querySingle(
+                        3,
+                        "SELECT age FROM person WHERE id = ?",
+                        rs -> rs.getInt(1),
+                        3
+                    )
+                ).peek(age ->
+                    assertEquals(31, age)
+                ).flatMap(age ->
+                    persons.onShard(2, Repository.querySingle(
+                        "SELECT count(*) FROM person",
+                        rs -> rs.getInt(1)
+                    ))
+                ).peek(count ->
+                    assertEquals(2, count)
+                ).flatMap(count ->
+                    persons.queryAll(
+                        "SELECT id FROM person ORDER BY id",
+                        Comparator.<Integer>naturalOrder(),
+                        rs -> rs.getInt(1),
+                        Repository::mapToList
+                    )
+                ).peek(ids ->
+                    assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids)
+                ).flatMap(ids ->
+                    persons.queryAll(
+                        "SELECT id FROM person",
+                        rs -> rs.getInt(1),
+                        rows -> IO.succeed(rows.mapToInt(Integer::intValue).sum())
+                    )
+                ).peek(sum ->
+                    assertEquals(15, sum)
+                )
+        );
+    }
+
+    private static IO<Failure, Integer> insertPersons(
+        final ShardedRepository<Integer> persons
+    )
+    {
+        IO<Failure, Integer> inserts = IO.succeed(0);
+        for (int id = 1; id <= 5; id++) {
+            final int personId = id;
+            inserts = inserts.flatMap(count ->
+                persons.update(
+                    personId,
+                    "INSERT INTO person VALUES(?, ?, ?)",
+                    personId,
+                    "Person " + personId,
+                    27 + personId
+                )
+            );
+        }
+        return inserts;
+    }
+
+    private static <T> void checkSharded(
+        final String name,
+        final Function<ShardedRepository<Integer>, IO<Failure, T>> test
+    )
+    {
+        final Either<Failure, T> resultOrFailure = createShard(name + "0")
+            .flatMap(shard0 -> createShard(name + "1")
+                .flatMap(shard1 -> {
+                    try (ShardedRepository<Integer> persons = ShardedRepository.of(
+                        List.of(shard0, shard1),
+                        id -> id
+                    )) {
+                        return Cause.resultFlatten(defaultRuntime.unsafeRun(
+                            test.apply(persons)
+                        ));
+                    }
+                }));
+
+        assertTrue(resultOrFailure.isRight(), resultOrFailure.toString());
+    }
+
+    private static Either<Failure, Repository.Live> createShard(final String name)
+    {
+        return Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            Tuple2.of("URL", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+        ).flatMap(shard ->
+            Cause.resultFlatten(defaultRuntime.unsafeRun(
+                Repository.use(Repository.update(
+                    "CREATE TABLE person(" +
+                        "id INT PRIMARY KEY, " +
+                        "name VARCHAR(30) NOT NULL, " +
+                        "age INT" +
+                        ")"
+                )).provide(Repository.Service.class, shard)
+            )).map(v -> shard)
+        );
+    }
+}
@@ -0,0 +1,206 @@
+package fp.jadobec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Tuple2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementCacheTest
+{
+    final static DefaultPlatform platform = new DefaultPlatform();
+
+    final static Runtime defaultRuntime =
+        new DefaultRuntime(null, platform);
+
+    @AfterAll
+    public static void setUp()
+    {
+        platform.shutdown();
+    }
+
+    @Test
+    public void testReuseStatement() throws SQLException
+    {
+        final StatementCache.Counters counters = new StatementCache.Counters();
+        final StatementCache.Key key = StatementCache.Key.of("SELECT 1");
+
+        try (Connection connection = createConnection();
+            StatementCache cache = new StatementCache(2, counters))
+        {
+            final PreparedStatement statement = cache.prepare(connection, key);
+            cache.release(key, statement);
+
+            assertSame(statement, cache.prepare(connection, key));
+            assertEquals(new StatementCacheStats(1, 1, 0), counters.stats());
+        }
+    }
+
+    @Test
+    public void testInUseStatementIsNotShared() throws SQLException
+    {
+        final StatementCache.Counters counters = new StatementCache.Counters();
+        final StatementCache.Key key = StatementCache.Key.of("SELECT 1");
+
+        try (Connection connection = createConnection();
+            StatementCache cache = new StatementCache(2, counters))
+        {
+            final PreparedStatement outer = cache.prepare(connection, key);
+            final PreparedStatement inner = cache.prepare(connection, key);
+            assertNotSame(outer, inner);
+
+            cache.release(key, inner);
+            cache.release(key, outer);
+            assertTrue(outer.isClosed());
+            assertSame(inner, cache.prepare(connection, key));
+        }
+    }
+
+    @Test
+    public void testKeyFlags() throws SQLException
+    {
+        final StatementCache.Counters counters = new StatementCache.Counters();
+        final StatementCache.Key plain = StatementCache.Key.of("SELECT 1");
+        final StatementCache.Key withKeys =
+            StatementCache.Key.withGeneratedKeys("SELECT 1");
+
+        try (Connection connection = createConnection();
+            StatementCache cache = new StatementCache(2, counters))
+        {
+            cache.release(plain, cache.prepare(connection, plain));
+            cache.prepare(connection, withKeys);
+
+            assertEquals(new StatementCacheStats(0, 2, 0), counters.stats());
+        }
+    }
+
+    @Test
+    public void testEviction() throws SQLException
+    {
+        final StatementCache.Counters counters = new StatementCache.Counters();
+        final StatementCache.Key key1 = StatementCache.Key.of("SELECT 1");
+        final StatementCache.Key key2 = StatementCache.Key.of("SELECT 2");
+        final StatementCache.Key key3 = StatementCache.Key.of("SELECT 3");
+
+        try (Connection connection = createConnection();
+            StatementCache cache = new StatementCache(2, counters))
+        {
+            final PreparedStatement statement1 = cache.prepare(connection, key1);
+            cache.release(key1, statement1);
+            cache.release(key2, cache.prepare(connection, key2));
+            cache.release(key3, cache.prepare(connection, key3));
+
+            assertTrue(statement1.isClosed());
+            assertEquals(new StatementCacheStats(0, 3, 1), counters.stats());
+        }
+    }
+
+    @Test
+    public void testLiveStatementCache()
+    {
+        final Either<Failure, StatementCacheStats> statsOrFailure =
+            Repository.Live.create(
+                "org.h2.jdbcx.JdbcDataSource",
+                "SELECT 1",
+                Tuple2.of("URL", "jdbc:h2:mem:")
+            ).map(repository ->
+                repository.withStatementCacheSize(16)
+            ).flatMap(repository ->
+                Cause.resultFlatten(defaultRuntime.unsafeRun(
+                    Repository.use(
+                        Repository.querySingle(
+                            "SELECT ?",
+                            rs -> rs.getInt(1),
+                            1
+                        ).flatMap(i ->
+                            Repository.querySingle(
+                                "SELECT ?",
+                                rs -> rs.getInt(1),
+                                2
+                            )
+                        ).flatMap(i ->
+                            Repository.statementCacheStats()
+                        )
+                    ).provide(Repository.Service.class, repository)
+                ))
+            );
+
+        assertTrue(statsOrFailure.isRight(), statsOrFailure.toString());
+        assertEquals(1, statsOrFailure.right().hits());
+        assertEquals(1, statsOrFailure.right().misses());
+    }
+
+    @Test
+    public void testReleaseResetsHints() throws SQLException
+    {
+        final StatementCache.Counters counters = new StatementCache.Counters();
+        final StatementCache.Key key = StatementCache.Key.of("SELECT 1");
+
+        try (Connection connection = createConnection();
+            StatementCache cache = new StatementCache(2, counters))
+        {
+            final PreparedStatement statement = cache.prepare(connection, key);
+            QueryOptions.build(builder -> builder.fetchSize(50).maxRows(10))
+                .apply(statement);
+            cache.release(key, statement);
+
+            final PreparedStatement reused = cache.prepare(connection, key);
+            assertSame(statement, reused);
+            assertEquals(0, reused.getMaxRows());
+        }
+    }
+
+    @Test
+    public void testMaxRowsNotKeptByColumnarQuery()
+    {
+        final String sql = "SELECT X FROM SYSTEM_RANGE(1, 20)";
+        final Either<Failure, Integer> rowsOrFailure =
+            Repository.Live.create(
+                "org.h2.jdbcx.JdbcDataSource",
+                "SELECT 1",
+                Tuple2.of("URL", "jdbc:h2:mem:")
+            ).map(repository ->
+                repository.withStatementCacheSize(16)
+            ).flatMap(repository ->
+                Cause.resultFlatten(defaultRuntime.unsafeRun(
+                    Repository.use(
+                        Repository.query(
+                            sql,
+                            QueryOptions.build(builder -> builder.maxRows(10)),
+                            rs -> rs.getLong(1),
+                            Repository::mapToList
+                        ).peek(rows ->
+                            assertEquals(10, rows.size())
+                        ).flatMap(rows ->
+                            Repository.queryColumnar(sql)
+                        ).map(ColumnarResult::rowCount)
+                    ).provide(Repository.Service.class, repository)
+                ))
+            );
+
+        assertTrue(rowsOrFailure.isRight(), rowsOrFailure.toString());
+        assertEquals(20, rowsOrFailure.right());
+    }
+
+    private static Connection createConnection() throws SQLException
+    {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:");
+        return dataSource.getConnection();
+    }
+}
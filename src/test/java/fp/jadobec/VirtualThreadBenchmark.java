@@ -0,0 +1,161 @@
+package fp.jadobec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import fp.io.Cause;
+import fp.io.DefaultPlatform;
+import fp.io.DefaultRuntime;
+import fp.io.IO;
+import fp.io.Runtime;
+import fp.util.Either;
+import fp.util.Failure;
+import fp.util.Right;
+import fp.util.Tuple2;
+
+/**
+ * Runs many short queries on a small pool, on platform threads and on
+ * virtual threads: through {@code mapStreamEitherPar}, and one after the
+ * other on one connection, so the time of a query's own path is measured
+ * too. The peak number of platform threads is printed with each round.
+ * The virtual threads are skipped before Java 21.
+ *
+ * <pre>
+ * sbt "Test/runMain fp.jadobec.VirtualThreadBenchmark 20000 2000 16"
+ * </pre>
+ *
+ * The arguments are the number of queries, the parallelism and the pool
+ * size.
+ */
+public class VirtualThreadBenchmark
+{
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(final String[] args)
+    {
+        final int queries = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        final int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        final int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        final DefaultPlatform platform = new DefaultPlatform();
+        final Runtime runtime = new DefaultRuntime(null, platform);
+        try {
+            run("platform threads", runtime, queries, parallelism, poolSize,
+                live -> live);
+            run("virtual threads", runtime, queries, parallelism, poolSize,
+                Repository.Live::withVirtualThreads);
+        } finally {
+            platform.shutdown();
+        }
+    }
+
+    private static void run(
+        final String mode,
+        final Runtime runtime,
+        final int queries,
+        final int parallelism,
+        final int poolSize,
+        final Function<Repository.Live, Repository.Live> configure
+    )
+    {
+        final Either<Failure, Repository.Live> liveOrFailure = Repository.Live.create(
+            "org.h2.jdbcx.JdbcDataSource",
+            "SELECT 1",
+            PoolConfig.build(builder -> builder.maxSize(poolSize)),
+            Tuple2.of("URL", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1")
+        );
+        if (!liveOrFailure.isRight()) {
+            System.out.println(mode + ": " + liveOrFailure);
+            return;
+        }
+
+        final Repository.Live configured;
+        try {
+            configured = configure.apply(liveOrFailure.right());
+        } catch (UnsupportedOperationException e) {
+            liveOrFailure.right().close();
+            System.out.println(mode + ": skipped, " + e.getMessage());
+            return;
+        }
+
+        try (Repository.Live live = configured) {
+            for (int round = 1; round <= 3; round++) {
+                threads.resetPeakThreadCount();
+                final long start = System.nanoTime();
+                final Either<Failure, Long> succeeded = Cause.resultFlatten(
+                    runtime.unsafeRun(
+                        Repository.mapStreamEitherPar(
+                            IO.succeed(numbers(queries)),
+                            VirtualThreadBenchmark::select,
+                            parallelism
+                        ).map(results ->
+                            results.filter(Either::isRight).count()
+                        ).provide(Repository.Service.class, live)
+                    )
+                );
+                final long millis = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf(
+                    "%s, round %d: %s parallel queries in %d ms, %d threads, %s%n",
+                    mode,
+                    round,
+                    succeeded,
+                    millis,
+                    threads.getPeakThreadCount(),
+                    Cause.resultFlatten(runtime.unsafeRun(
+                        Repository.poolStats()
+                            .provide(Repository.Service.class, live)
+                    ))
+                );
+
+                threads.resetPeakThreadCount();
+                final long sequentialStart = System.nanoTime();
+                final Either<Failure, Integer> sequential = Cause.resultFlatten(
+                    runtime.unsafeRun(
+                        Repository.use(selectFrom(0, queries))
+                            .provide(Repository.Service.class, live)
+                    )
+                );
+                final long sequentialMillis =
+                    (System.nanoTime() - sequentialStart) / 1_000_000;
+
+                System.out.printf(
+                    "%s, round %d: %s sequential queries in %d ms, %d threads%n",
+                    mode,
+                    round,
+                    sequential,
+                    sequentialMillis,
+                    threads.getPeakThreadCount()
+                );
+            }
+        }
+    }
+
+    /**
+     * Runs the queries one after the other and returns their number.
+     */
+    private static IO<Failure, Integer> selectFrom(final int number, final int count)
+    {
+        return number == count
+            ? IO.succeed(count)
+            : select(number).flatMap(n -> selectFrom(number + 1, count));
+    }
+
+    private static IO<Failure, Integer> select(final Integer number)
+    {
+        return Repository.querySingle("SELECT ?", rs -> rs.getInt(1), number);
+    }
+
+    private static Stream<Either<Failure, Integer>> numbers(final int count)
+    {
+        final List<Either<Failure, Integer>> numbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(Right.of(i));
+        }
+        return numbers.stream();
+    }
+}